@@ -29,6 +29,10 @@ public class CorsConfig implements WebMvcConfigurer {
     @Value("#{'${cors.allowed-headers}'.split(',')}")
     private List<String> allowedHeaders;
 
+    // Response headers the frontend may read, e.g. the product list's X-Next-Cursor and ETag
+    @Value("#{'${cors.exposed-headers:X-Next-Cursor,ETag}'.split(',')}")
+    private List<String> exposedHeaders;
+
     @Value("${cors.allow-credentials:true}")
     private boolean allowCredentials;
 
@@ -38,6 +42,7 @@ public class CorsConfig implements WebMvcConfigurer {
                 .allowedOrigins(allowedOrigins.toArray(new String[0]))
                 .allowedMethods(allowedMethods.toArray(new String[0]))
                 .allowedHeaders(allowedHeaders.toArray(new String[0]))
+                .exposedHeaders(exposedHeaders.toArray(new String[0]))
                 .allowCredentials(allowCredentials)
                 .maxAge(3600); // Cache preflight response for 1 hour
     }
@@ -48,6 +53,7 @@ public class CorsConfig implements WebMvcConfigurer {
         configuration.setAllowedOrigins(allowedOrigins);
         configuration.setAllowedMethods(allowedMethods);
         configuration.setAllowedHeaders(allowedHeaders);
+        configuration.setExposedHeaders(exposedHeaders);
         configuration.setAllowCredentials(allowCredentials);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -0,0 +1,60 @@
+package com.tryon.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP client for the Gemini API
+ *
+ * Built on the JDK HttpClient, which keeps connections alive for reuse and multiplexes
+ * concurrent requests over a single HTTP/2 connection. Connect and response timeouts come
+ * from configuration; the response timeout defaults to tryon.service.timeout.
+ */
+@Configuration
+@Slf4j
+public class GeminiHttpClientConfig {
+
+    @Value("${gemini.http.version:HTTP_2}")
+    private HttpClient.Version httpVersion;
+
+    @Value("${gemini.http.connect-timeout:10s}")
+    private Duration connectTimeout;
+
+    @Value("${gemini.http.response-timeout:${tryon.service.timeout}s}")
+    private Duration responseTimeout;
+
+    @Value("${tryon.execution.mode:platform}")
+    private String executionMode;
+
+    @Bean
+    public HttpClient geminiHttpClient() {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(httpVersion)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL);
+
+        // Async response handling follows the configured execution mode
+        if ("virtual".equalsIgnoreCase(executionMode)) {
+            builder.executor(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("gemini-http-", 0).factory()));
+        }
+
+        log.info("Gemini HTTP client: version={}, connectTimeout={}, responseTimeout={}",
+                httpVersion, connectTimeout, responseTimeout);
+        return builder.build();
+    }
+
+    @Bean
+    public RestTemplate geminiRestTemplate(HttpClient geminiHttpClient) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(geminiHttpClient);
+        requestFactory.setReadTimeout(responseTimeout);
+        return new RestTemplate(requestFactory);
+    }
+}
@@ -0,0 +1,30 @@
+package com.tryon.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual-thread execution mode (tryon.execution.mode=virtual)
+ *
+ * Tomcat request handling runs on virtual threads, so upload storage and image serving
+ * block a cheap virtual thread instead of a connector worker. Job processing switches to
+ * virtual threads in {@link com.tryon.service.TryOnJobExecutor}, which covers the blocking
+ * Gemini call and result writes done by the job.
+ */
+@Configuration
+@ConditionalOnProperty(name = "tryon.execution.mode", havingValue = "virtual")
+@Slf4j
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        log.info("Tomcat request handling configured to use virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-vt-", 0).factory()));
+    }
+}
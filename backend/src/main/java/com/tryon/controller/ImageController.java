@@ -1,24 +1,41 @@
 package com.tryon.controller;
 
+import com.tryon.service.ImageCacheService;
 import com.tryon.service.ImageStorageService;
+import com.tryon.service.ImageVariantService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.io.IOException;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Controller for serving stored images to the frontend
@@ -30,50 +47,219 @@ import java.nio.file.Path;
 @Tag(name = "Image Serving", description = "Endpoints for serving stored images")
 public class ImageController {
 
+    // Tomcat's sendfile contract: the connector writes the file with zero-copy after the handler returns
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private final ImageStorageService imageStorageService;
+    private final ImageCacheService imageCacheService;
+    private final ImageVariantService imageVariantService;
+
+    @Value("${storage.image-cache.product-max-age:1h}")
+    private Duration productMaxAge;
+
+    @Value("${storage.sendfile.enabled:true}")
+    private boolean sendfileEnabled;
+
+    @Value("${storage.backend.redirect-reads:false}")
+    private boolean redirectReads;
 
     @Operation(
         summary = "Serve stored images",
-        description = "Serve images from different categories (products, user, results) to the frontend",
+        description = "Serve images from different categories (products, user, results) to the frontend. " +
+                     "Responses carry a strong ETag and Last-Modified; conditional requests are answered with 304. " +
+                     "A single byte Range is answered with 206 Partial Content. Optional w/q/fmt parameters " +
+                     "return a resized, re-encoded variant (generated once, then served from a disk cache).",
         responses = {
             @ApiResponse(responseCode = "200", description = "Image served successfully"),
-            @ApiResponse(responseCode = "404", description = "Image not found")
+            @ApiResponse(responseCode = "400", description = "Invalid width, quality or format"),
+            @ApiResponse(responseCode = "206", description = "Requested byte range of the image"),
+            @ApiResponse(responseCode = "302", description = "Image is served directly by the storage backend (storage.backend.redirect-reads)"),
+            @ApiResponse(responseCode = "304", description = "Image not modified since the client's copy"),
+            @ApiResponse(responseCode = "404", description = "Image not found"),
+            @ApiResponse(responseCode = "416", description = "Requested range not satisfiable")
         }
     )
     @GetMapping("/{category}/{filename:.+}")
-    public ResponseEntity<Resource> serveImage(
+    public ResponseEntity<?> serveImage(
             @Parameter(description = "Image category", example = "products")
             @PathVariable String category,
 
             @Parameter(description = "Image filename", example = "123e4567-e89b-12d3-a456-426614174000.jpg")
-            @PathVariable String filename
+            @PathVariable String filename,
+
+            @Parameter(description = "Resize to this width in pixels (rounded up to a supported breakpoint, never upscaled)", example = "480")
+            @RequestParam(value = "w", required = false) Integer width,
+
+            @Parameter(description = "JPEG quality 1-100", example = "75")
+            @RequestParam(value = "q", required = false) Integer quality,
+
+            @Parameter(description = "Output format: jpeg or png (default: same as the original)", example = "jpeg")
+            @RequestParam(value = "fmt", required = false) String format,
+
+            HttpServletRequest request,
+            HttpServletResponse response
     ) {
+        ImageVariantService.VariantSpec variantSpec = width != null || quality != null || format != null
+                ? imageVariantService.spec(width, quality, format)
+                : null;
+
         try {
-            Path imagePath = imageStorageService.getImagePath(category, filename);
+            // Originals can be downloaded straight from the storage backend; variants are made here
+            if (redirectReads && variantSpec == null) {
+                Optional<URI> direct = imageStorageService.presignedImageUrl(category, filename);
+                if (direct.isPresent()) {
+                    return ResponseEntity.status(HttpStatus.FOUND).location(direct.get()).build();
+                }
+            }
 
-            if (!Files.exists(imagePath)) {
+            Path imagePath = imageStorageService.resolveImagePath(category, filename);
+
+            Optional<ImageCacheService.CachedImage> cached = imageCacheService.get(imagePath);
+            if (cached.isEmpty()) {
+                // Published by another node: pull it into local storage once
+                Optional<Path> fetched = imageStorageService.fetchImage(category, filename);
+                if (fetched.isPresent()) {
+                    cached = imageCacheService.get(fetched.get());
+                }
+            }
+            if (cached.isEmpty()) {
                 log.warn("Image not found: {}/{}", category, filename);
                 return ResponseEntity.notFound().build();
             }
+            ImageCacheService.CachedImage image = cached.get();
+            if (variantSpec != null) {
+                image = variantOf(image, variantSpec);
+            }
+
+            // Sets 304 with the validators on the response when the client copy is current
+            if (new ServletWebRequest(request, response).checkNotModified(image.etag(), image.lastModified())) {
+                return null;
+            }
 
-            Resource resource = new UrlResource(imagePath.toUri());
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.parseMediaType(image.contentType()));
+            headers.setETag(image.etag());
+            headers.setLastModified(image.lastModified());
+            headers.setCacheControl(cacheControlFor(category));
+            headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+            headers.set(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"");
 
-            // Determine content type
-            String contentType = Files.probeContentType(imagePath);
-            if (contentType == null) {
-                contentType = MediaType.APPLICATION_OCTET_STREAM_VALUE;
+            long length = image.length();
+            long start = 0;
+            long end = length - 1;
+            HttpStatus status = HttpStatus.OK;
+
+            HttpRange range = requestedRange(request, image);
+            if (range != null) {
+                try {
+                    start = range.getRangeStart(length);
+                    end = range.getRangeEnd(length);
+                } catch (IllegalArgumentException e) {
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                            .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                            .build();
+                }
+                status = HttpStatus.PARTIAL_CONTENT;
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
             }
+            long count = end - start + 1;
+            headers.setContentLength(count);
+
+            log.debug("Serving image: {}/{} [{}-{}]", category, filename, start, end);
 
-            log.debug("Serving image: {}/{}", category, filename);
+            // Hot images: straight from memory
+            if (image.data() != null) {
+                return ResponseEntity.status(status).headers(headers).body(range == null
+                        ? image.data()
+                        : new ResourceRegion(new ByteArrayResource(image.data()), start, count));
+            }
+
+            // Large images: hand the file to the connector for zero-copy transfer
+            if (sendfileSupported(request)) {
+                response.setStatus(status.value());
+                headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+                request.setAttribute(SENDFILE_FILENAME, image.path().toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, start);
+                request.setAttribute(SENDFILE_END, end + 1);
+                return null;
+            }
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
-                    .body(resource);
+            return ResponseEntity.status(status).headers(headers).body(range == null
+                    ? new InputStreamResource(Files.newInputStream(image.path()))
+                    : new ResourceRegion(new FileSystemResource(image.path()), start, count));
 
         } catch (Exception e) {
             log.error("Error serving image {}/{}: {}", category, filename, e.getMessage());
             return ResponseEntity.notFound().build();
         }
     }
+
+    /**
+     * Resolve the requested variant, falling back to the original when it cannot be decoded
+     */
+    private ImageCacheService.CachedImage variantOf(ImageCacheService.CachedImage original,
+                                                    ImageVariantService.VariantSpec spec) throws IOException {
+        try {
+            Path variantPath = imageVariantService.getVariant(original, spec);
+            return imageCacheService.get(variantPath).orElse(original);
+        } catch (IllegalArgumentException e) {
+            log.debug("Serving original for {}: {}", original.path().getFileName(), e.getMessage());
+            return original;
+        }
+    }
+
+    /**
+     * The single byte range to serve, or null to serve the whole image
+     *
+     * Multi-range requests are answered with the whole image, as is a Range whose If-Range
+     * validator no longer matches the current version.
+     */
+    private HttpRange requestedRange(HttpServletRequest request, ImageCacheService.CachedImage image) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !ifRangeMatches(request, image)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private boolean ifRangeMatches(HttpServletRequest request, ImageCacheService.CachedImage image) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(image.etag());
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == image.lastModified() / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private boolean sendfileSupported(HttpServletRequest request) {
+        return sendfileEnabled
+                && !"HEAD".equals(request.getMethod())
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT));
+    }
+
+    /**
+     * Result images are written once per job id and never change; product images may be replaced
+     * under the same name, so clients revalidate them with the ETag after a short max-age
+     */
+    private CacheControl cacheControlFor(String category) {
+        return switch (category) {
+            case "results" -> CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable();
+            case "user" -> CacheControl.noCache().cachePrivate();
+            default -> CacheControl.maxAge(productMaxAge).cachePublic();
+        };
+    }
 }
@@ -1,17 +1,25 @@
 package com.tryon.controller;
 
+import com.tryon.dto.CatalogImportReport;
 import com.tryon.dto.ProductRequest;
 import com.tryon.dto.ProductResponse;
+import com.tryon.service.CatalogImportService;
+import com.tryon.service.CatalogRecordReader;
+import com.tryon.service.ProductCatalogIndex;
+import com.tryon.service.ProductResponseCache;
 import com.tryon.service.ProductService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -28,6 +36,7 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.List;
 
 /**
@@ -41,7 +50,11 @@ import java.util.List;
 @Tag(name = "Products", description = "Product management APIs for virtual try-on")
 public class ProductController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String TEXT_CSV_VALUE = "text/csv";
+
     private final ProductService productService;
+    private final CatalogImportService catalogImportService;
 
     @Operation(
         summary = "Upload product with image",
@@ -104,36 +117,134 @@ public class ProductController {
     }
 
     @Operation(
-        summary = "List all products",
-        description = "Retrieve all products with their metadata and image URLs for the frontend grid display",
+        summary = "List products",
+        description = "Retrieve products, latest first, with their metadata and image URLs for the frontend grid display. " +
+                     "Results are paginated: when more products match, the X-Next-Cursor response header carries " +
+                     "the cursor for the next page. Pages carry an ETag; send it back in If-None-Match to get 304 " +
+                     "while the page is unchanged.",
         responses = {
-            @ApiResponse(responseCode = "200", description = "Products retrieved successfully")
+            @ApiResponse(responseCode = "200", description = "Products retrieved successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = ProductResponse.class)))),
+            @ApiResponse(responseCode = "304", description = "Page unchanged since the ETag in If-None-Match"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor, limit or price range")
         }
     )
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<ProductResponse>> getAllProducts() {
-        List<ProductResponse> products = productService.getAllProducts();
-        log.debug("Retrieved {} products", products.size());
+    public ResponseEntity<byte[]> getAllProducts(
+            @Parameter(description = "Only products in this category", example = "dresses")
+            @RequestParam(value = "category", required = false) String category,
+
+            @Parameter(description = "Minimum price, inclusive", example = "20.00")
+            @RequestParam(value = "minPrice", required = false) BigDecimal minPrice,
+
+            @Parameter(description = "Maximum price, inclusive", example = "100.00")
+            @RequestParam(value = "maxPrice", required = false) BigDecimal maxPrice,
+
+            @Parameter(description = "Only products available in this size", example = "M")
+            @RequestParam(value = "size", required = false) String size,
+
+            @Parameter(description = "Only products available in this color", example = "Blue")
+            @RequestParam(value = "color", required = false) String color,
+
+            @Parameter(description = "X-Next-Cursor value from the previous page")
+            @RequestParam(value = "cursor", required = false) String cursor,
+
+            @Parameter(description = "Page size (default 100)", example = "24")
+            @RequestParam(value = "limit", required = false) Integer limit
+    ) {
+        ProductCatalogIndex.Filter filter = new ProductCatalogIndex.Filter(category, minPrice, maxPrice, size, color);
+        ProductResponseCache.CachedJson page = productService.findProductsJson(filter, cursor, limit);
+        log.debug("Retrieved product page ({} bytes)", page.body().length);
+
+        ResponseEntity.BodyBuilder response = cachedJson(page);
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.body());
+    }
+
+    @Operation(
+        summary = "Search products",
+        description = "Full-text search over product name, description, category and colors, best match first. " +
+                     "Every word must match; the last word also matches as a prefix for search-as-you-type.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Matching products, possibly none"),
+            @ApiResponse(responseCode = "400", description = "Missing query or invalid limit")
+        }
+    )
+    @GetMapping(value = "/search", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<ProductResponse>> searchProducts(
+            @Parameter(description = "Search text", required = true, example = "blue dre")
+            @RequestParam("q") String query,
+
+            @Parameter(description = "Maximum results (default 20)", example = "10")
+            @RequestParam(value = "limit", required = false) Integer limit
+    ) {
+        List<ProductResponse> products = productService.searchProducts(query, limit);
+        log.debug("Search '{}' matched {} products", query, products.size());
         return ResponseEntity.ok(products);
     }
 
+    @Operation(
+        summary = "Bulk import products",
+        description = "Stream a catalog as NDJSON (one product object per line) or CSV (header row first). " +
+                     "Records use the product fields plus optional \"id\" and \"image\"; images are read from " +
+                     "the server-side directory or .zip archive named by the images parameter. Invalid records " +
+                     "are rejected individually and listed in the report.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Import finished; see status and failures"),
+            @ApiResponse(responseCode = "400", description = "Invalid image source or CSV header"),
+            @ApiResponse(responseCode = "415", description = "Body is neither NDJSON nor CSV")
+        }
+    )
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE},
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<CatalogImportReport> importProducts(
+            HttpServletRequest request,
+
+            @Parameter(description = "Directory or .zip archive of product images, relative to catalog.import.root",
+                    example = "spring-collection.zip")
+            @RequestParam(value = "images", required = false) String images
+    ) throws IOException {
+        CatalogRecordReader.Format format = MediaType.parseMediaType(request.getContentType())
+                .isCompatibleWith(MediaType.APPLICATION_NDJSON)
+                ? CatalogRecordReader.Format.NDJSON
+                : CatalogRecordReader.Format.CSV;
+        CatalogImportReport report = catalogImportService.importCatalog(request.getInputStream(), format, images);
+        return ResponseEntity.ok(report);
+    }
+
+    @Operation(
+        summary = "Running imports",
+        description = "Progress of catalog imports that are still running",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Progress reports, possibly none")
+        }
+    )
+    @GetMapping(value = "/import", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<CatalogImportReport>> getRunningImports() {
+        return ResponseEntity.ok(catalogImportService.activeImports());
+    }
+
     @Operation(
         summary = "Get product by ID",
         description = "Retrieve a specific product's metadata and image URL",
         responses = {
-            @ApiResponse(responseCode = "200", description = "Product found"),
+            @ApiResponse(responseCode = "200", description = "Product found",
+                    content = @Content(schema = @Schema(implementation = ProductResponse.class))),
+            @ApiResponse(responseCode = "304", description = "Product unchanged since the ETag in If-None-Match"),
             @ApiResponse(responseCode = "404", description = "Product not found")
         }
     )
     @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<ProductResponse> getProductById(
+    public ResponseEntity<byte[]> getProductById(
             @Parameter(description = "Product ID", required = true, example = "123e4567-e89b-12d3-a456-426614174000")
             @PathVariable String id
     ) {
-        return productService.getProductById(id)
+        return productService.getProductJson(id)
                 .map(product -> {
                     log.debug("Retrieved product: {}", id);
-                    return ResponseEntity.ok(product);
+                    return cachedJson(product).body(product.body());
                 })
                 .orElseGet(() -> {
                     log.warn("Product not found: {}", id);
@@ -191,4 +302,14 @@ public class ProductController {
             return ResponseEntity.notFound().build();
         }
     }
+
+    /**
+     * 200 response for a pre-serialized body; Spring answers a matching If-None-Match with 304 instead
+     */
+    private static ResponseEntity.BodyBuilder cachedJson(ProductResponseCache.CachedJson json) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(json.etag())
+                .cacheControl(CacheControl.noCache());
+    }
 }
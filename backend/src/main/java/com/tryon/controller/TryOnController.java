@@ -1,12 +1,17 @@
 package com.tryon.controller;
 
 import com.tryon.dto.TryOnJobResponse;
+import com.tryon.service.ImageStorageService;
+import com.tryon.service.JobEventBroadcaster;
+import com.tryon.service.MultipartStreamReader;
+import com.tryon.service.StoredUpload;
 import com.tryon.service.TryOnService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -19,9 +24,12 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
 
 /**
  * REST Controller for virtual try-on processing
@@ -46,7 +54,12 @@ import java.io.IOException;
 @Tag(name = "Virtual Try-On", description = "Virtual try-on processing APIs using specialized garment transfer models")
 public class TryOnController {
 
+    // Longest accepted value for a plain (non-file) form field
+    private static final int MAX_FIELD_BYTES = 4096;
+
     private final TryOnService tryOnService;
+    private final JobEventBroadcaster jobEventBroadcaster;
+    private final ImageStorageService imageStorageService;
 
     @Operation(
         summary = "Submit virtual try-on job",
@@ -55,7 +68,9 @@ public class TryOnController {
                      "try-on microservice (e.g., TryOnDiffusion) that preserves garment details and realistic fit. " +
                      "Returns a job ID immediately for status tracking.",
         requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
-            description = "Multipart form data with either productId OR productImage file, plus userImage and prompt",
+            description = "Multipart form data with either productId OR productImage file (JPEG/PNG, max 10MB), " +
+                         "plus userImage (JPEG/PNG, max 10MB). An optional prompt field is accepted and ignored - " +
+                         "prompts are generated automatically.",
             required = true,
             content = @Content(mediaType = MediaType.MULTIPART_FORM_DATA_VALUE)
         ),
@@ -63,56 +78,96 @@ public class TryOnController {
             @ApiResponse(responseCode = "202", description = "Try-on job submitted successfully"),
             @ApiResponse(responseCode = "400", description = "Invalid input - missing required fields or invalid files"),
             @ApiResponse(responseCode = "404", description = "Product ID not found"),
-            @ApiResponse(responseCode = "413", description = "File size exceeds maximum limit")
+            @ApiResponse(responseCode = "413", description = "File size exceeds maximum limit"),
+            @ApiResponse(responseCode = "429", description = "Try-on queue is full - retry after the Retry-After delay")
         }
     )
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<TryOnJobResponse> submitTryOnJob(
-            @Parameter(description = "Existing product ID to use (mutually exclusive with productImage)",
-                      example = "123e4567-e89b-12d3-a456-426614174000")
-            @RequestParam(value = "productId", required = false) String productId,
+    public ResponseEntity<TryOnJobResponse> submitTryOnJob(HttpServletRequest request) throws IOException {
 
-            @Parameter(description = "New product image file (mutually exclusive with productId). JPEG/PNG, max 10MB")
-            @RequestParam(value = "productImage", required = false) MultipartFile productImage,
+        // Reject before reading the body when there is no room in the queue and no cached result could serve it
+        tryOnService.checkCapacity();
 
-            @Parameter(description = "User/customer image for try-on. JPEG/PNG, max 10MB", required = true)
-            @RequestParam("userImage") MultipartFile userImage,
+        // Parse the body as it arrives: files are validated, hashed and written to storage in one pass
+        // instead of being buffered by the multipart resolver first
+        MultipartStreamReader reader = new MultipartStreamReader(
+                request.getInputStream(), MultipartStreamReader.boundaryOf(request.getContentType()));
 
-            @Parameter(description = "Text prompt describing desired try-on result (optional - if empty, automatic prompts will be generated)",
-                      required = false,
-                      example = "Show the blue jeans on the person with a casual fit")
-            @RequestParam(value = "prompt", required = false, defaultValue = "") String prompt
-    ) throws IOException {
+        String productId = null;
+        StoredUpload productImage = null;
+        StoredUpload userImage = null;
+        try {
+            MultipartStreamReader.Part part;
+            while ((part = reader.nextPart()) != null) {
+                if ("productId".equals(part.name())) {
+                    productId = part.readString(MAX_FIELD_BYTES).trim();
+                    if (productId.isEmpty()) {
+                        productId = null;
+                    }
+                } else if ("productImage".equals(part.name()) && hasFile(part)) {
+                    productImage = storeUpload(part, "products", productImage);
+                } else if ("userImage".equals(part.name()) && hasFile(part)) {
+                    userImage = storeUpload(part, "user", userImage);
+                }
+                // Anything else (including the optional prompt - prompts are generated automatically) is skipped
+            }
 
-        // Validate that either productId or productImage is provided (but not both)
-        if ((productId == null && productImage == null) || (productId != null && productImage != null)) {
-            throw new IllegalArgumentException(
-                "Either productId or productImage must be provided (but not both)"
-            );
+            // Validate that either productId or productImage is provided (but not both)
+            if ((productId == null && productImage == null) || (productId != null && productImage != null)) {
+                throw new IllegalArgumentException(
+                    "Either productId or productImage must be provided (but not both)"
+                );
+            }
+
+            // Validate required fields
+            if (userImage == null) {
+                throw new IllegalArgumentException("userImage is required");
+            }
+
+            TryOnJobResponse job;
+            if (productId != null) {
+                // Use existing product
+                job = tryOnService.submitTryOnJob(productId, userImage);
+                log.info("Submitted try-on job {} with existing product: {}", job.getJobId(), productId);
+            } else {
+                // Use uploaded product image with default naming
+                String productName = productImage.originalFilename() != null ?
+                    productImage.originalFilename() : "uploaded-product";
+                job = tryOnService.submitTryOnJob(productImage, userImage, productName, "general");
+                log.info("Submitted try-on job {} with new product image: {}", job.getJobId(), productName);
+            }
+
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (IOException | RuntimeException e) {
+            // The job was never admitted - don't leave its uploads behind
+            discard(productImage);
+            discard(userImage);
+            throw e;
         }
+    }
 
-        // Validate required fields
-        if (userImage == null || userImage.isEmpty()) {
-            throw new IllegalArgumentException("userImage is required");
+    /**
+     * Browsers send an empty, unnamed file part for a file input left blank
+     */
+    private boolean hasFile(MultipartStreamReader.Part part) {
+        if (!part.isFile()) {
+            throw new IllegalArgumentException("Form field '" + part.name() + "' must be a file");
         }
+        return !part.filename().isEmpty();
+    }
 
-        // Note: prompt is now optional - if empty, automatic prompts will be generated
-
-        TryOnJobResponse job;
-        if (productId != null) {
-            // Use existing product
-            job = tryOnService.submitTryOnJob(productId, userImage);
-            log.info("Submitted try-on job {} with existing product: {}", job.getJobId(), productId);
-        } else {
-            // Use uploaded product image with default naming
-            String productName = (productImage != null && productImage.getOriginalFilename() != null) ? 
-                productImage.getOriginalFilename() : "uploaded-product";
-            job = tryOnService.submitTryOnJob(productImage, userImage, productName, "general");
-            log.info("Submitted try-on job {} with new product image: {}", job.getJobId(), 
-                productImage != null ? productImage.getOriginalFilename() : "uploaded-product");
+    private StoredUpload storeUpload(MultipartStreamReader.Part part, String category, StoredUpload previous)
+            throws IOException {
+        if (previous != null) {
+            throw new IllegalArgumentException("Form field '" + part.name() + "' was sent more than once");
         }
+        return imageStorageService.ingestImage(part.body(), category, UUID.randomUUID().toString(), part.filename());
+    }
 
-        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    private void discard(StoredUpload upload) {
+        if (upload != null) {
+            imageStorageService.deleteImage(upload.path());
+        }
     }
 
     @Operation(
@@ -139,6 +194,84 @@ public class TryOnController {
         }
     }
 
+    @Operation(
+        summary = "Stream try-on job status",
+        description = "Server-Sent Events stream of status changes for one job. The current status is sent first " +
+                     "as a 'status' event, followed by every transition; the stream closes once the job is " +
+                     "SUCCEEDED or FAILED. Use instead of polling the status endpoint.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Event stream opened"),
+            @ApiResponse(responseCode = "404", description = "Job ID not found")
+        }
+    )
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJobEvents(
+            @Parameter(description = "Try-on job ID", required = true, example = "job-123e4567-e89b-12d3-a456-426614174000")
+            @PathVariable String jobId
+    ) {
+        try {
+            return ResponseEntity.ok(jobEventBroadcaster.openStream(List.of(jobId)));
+        } catch (IllegalArgumentException e) {
+            log.warn("Job not found: {}", jobId);
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @Operation(
+        summary = "Stream status of several try-on jobs",
+        description = "Server-Sent Events stream multiplexing status changes for several jobs over one connection. " +
+                     "Unknown job IDs are ignored; the stream closes once every known job is SUCCEEDED or FAILED.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Event stream opened"),
+            @ApiResponse(responseCode = "400", description = "Too many job IDs requested"),
+            @ApiResponse(responseCode = "404", description = "None of the job IDs were found")
+        }
+    )
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJobsEvents(
+            @Parameter(description = "Comma-separated try-on job IDs", required = true)
+            @RequestParam("jobIds") List<String> jobIds
+    ) {
+        if (jobIds.size() > jobEventBroadcaster.getMaxJobsPerStream()) {
+            throw new IllegalArgumentException(
+                "At most " + jobEventBroadcaster.getMaxJobsPerStream() + " jobs can be watched per stream"
+            );
+        }
+
+        try {
+            return ResponseEntity.ok(jobEventBroadcaster.openStream(jobIds));
+        } catch (IllegalArgumentException e) {
+            log.warn("None of the jobs found: {}", jobIds);
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @Operation(
+        summary = "Wait for a try-on job status change",
+        description = "Long-poll fallback for clients without Server-Sent Events. Returns as soon as the job's status " +
+                     "differs from 'since' (immediately if it already does), or the current status after the " +
+                     "long-poll timeout.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Job status retrieved"),
+            @ApiResponse(responseCode = "404", description = "Job ID not found")
+        }
+    )
+    @GetMapping(value = "/{jobId}/wait", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<DeferredResult<TryOnJobResponse>> waitForJobStatus(
+            @Parameter(description = "Try-on job ID", required = true, example = "job-123e4567-e89b-12d3-a456-426614174000")
+            @PathVariable String jobId,
+
+            @Parameter(description = "Last status seen by the client", example = "RUNNING")
+            @RequestParam(value = "since", required = false) TryOnJobResponse.JobStatus since
+    ) {
+        try {
+            return ResponseEntity.ok(jobEventBroadcaster.awaitChange(jobId, since));
+        } catch (IllegalArgumentException e) {
+            log.warn("Job not found: {}", jobId);
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     @Operation(
         summary = "Get all try-on jobs",
         description = "Retrieve all try-on jobs for monitoring and debugging (admin endpoint)",
@@ -0,0 +1,82 @@
+package com.tryon.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Progress and outcome of a bulk catalog import
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Bulk catalog import progress and result")
+public class CatalogImportReport {
+
+    @Schema(description = "Import identifier", example = "import-123e4567-e89b-12d3-a456-426614174000")
+    private String importId;
+
+    @Schema(description = "Input format", allowableValues = {"NDJSON", "CSV"})
+    private String format;
+
+    @Schema(description = "Import status", allowableValues = {"RUNNING", "COMPLETED", "FAILED"})
+    private ImportStatus status;
+
+    @Schema(description = "Records read from the input so far")
+    private long recordsRead;
+
+    @Schema(description = "Products added to the catalog")
+    private long imported;
+
+    @Schema(description = "Records rejected (see failures)")
+    private long failed;
+
+    @Schema(description = "Product images stored from the image source")
+    private long imagesStored;
+
+    @Schema(description = "Import start timestamp")
+    private LocalDateTime startedAt;
+
+    @Schema(description = "Elapsed time in milliseconds")
+    private long elapsedMs;
+
+    @Schema(description = "Records processed per second", example = "1850.5")
+    private double recordsPerSecond;
+
+    @Schema(description = "Why the import stopped early (when status is FAILED)")
+    private String errorMessage;
+
+    @Schema(description = "Rejected records, up to catalog.import.max-reported-failures")
+    private List<RecordFailure> failures;
+
+    /**
+     * A rejected input record
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Schema(description = "Rejected import record")
+    public static class RecordFailure {
+
+        @Schema(description = "Line the record starts on", example = "42")
+        private long line;
+
+        @Schema(description = "Product name or SKU from the record, when available")
+        private String product;
+
+        @Schema(description = "Reason the record was rejected")
+        private String reason;
+    }
+
+    public enum ImportStatus {
+        RUNNING,    // Input still being read
+        COMPLETED,  // Whole input processed; individual records may still have failed
+        FAILED      // Input could not be read to the end; records before the failure were imported
+    }
+}
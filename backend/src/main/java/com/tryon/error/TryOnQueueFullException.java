@@ -0,0 +1,21 @@
+package com.tryon.error;
+
+/**
+ * Thrown when the try-on job queue is at capacity and a new job cannot be admitted.
+ * Mapped to HTTP 429 with a Retry-After header by {@link GlobalExceptionHandler}.
+ */
+public class TryOnQueueFullException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int retryAfterSeconds;
+
+    public TryOnQueueFullException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,46 @@
+package com.tryon.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Backend holding published images so every node (and clients) can reach them (storage.backend.type)
+ *
+ * Images are always written to the local image directories first; the backend receives product
+ * images and try-on results once they are published, under keys of the form
+ * "{category}/{filename}" matching /api/images/{category}/{filename}.
+ */
+public interface BlobStorage {
+
+    /**
+     * Upload a local file under {@code key}, replacing any previous object
+     */
+    void store(String key, Path source, String contentType) throws IOException;
+
+    /**
+     * Download an object to a local file
+     *
+     * @return false if there is no object under {@code key}
+     */
+    boolean fetch(String key, Path target) throws IOException;
+
+    /**
+     * Delete an object; deleting a missing key is not an error
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Time-limited URL a client can GET the object from directly, bypassing this service
+     *
+     * @return empty if the backend cannot hand out direct URLs
+     */
+    Optional<URI> presignedUrl(String key, Duration ttl);
+
+    /**
+     * False when the local image directories are the only copy (nothing to upload or fetch)
+     */
+    boolean isRemote();
+}
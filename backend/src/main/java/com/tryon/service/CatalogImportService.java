@@ -0,0 +1,354 @@
+package com.tryon.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tryon.dto.CatalogImportReport;
+import com.tryon.dto.CatalogImportReport.ImportStatus;
+import com.tryon.dto.CatalogImportReport.RecordFailure;
+import com.tryon.dto.ProductRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Bulk catalog import from a streamed NDJSON or CSV file
+ *
+ * Records are parsed incrementally and handled in batches: each record is validated, its image
+ * (if any) is stored from a server-side directory or zip archive under catalog.import.root, with
+ * up to catalog.import.image-parallelism images stored at once on virtual threads, and the batch's
+ * valid products are then added to the catalog and its indexes together. A bad record or missing
+ * image rejects that record only. Running imports can be watched through {@link #activeImports}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogImportService {
+
+    private final ProductService productService;
+    private final ImageStorageService imageStorageService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final MeterRegistry meterRegistry;
+
+    // Image directories and archives must be inside this directory
+    @Value("${catalog.import.root:./import}")
+    private String importRoot;
+
+    @Value("${catalog.import.batch-size:500}")
+    private int batchSize;
+
+    @Value("${catalog.import.image-parallelism:16}")
+    private int imageParallelism;
+
+    @Value("${catalog.import.max-reported-failures:100}")
+    private int maxReportedFailures;
+
+    @Value("${catalog.import.progress-interval:5000}")
+    private long progressInterval;
+
+    private final Map<String, ImportProgress> activeImports = new ConcurrentHashMap<>();
+
+    private Counter importedCounter;
+    private Counter failedCounter;
+    private Counter imageCounter;
+
+    @PostConstruct
+    void registerMetrics() {
+        importedCounter = meterRegistry.counter("tryon.catalog.import.records", "result", "imported");
+        failedCounter = meterRegistry.counter("tryon.catalog.import.records", "result", "failed");
+        imageCounter = meterRegistry.counter("tryon.catalog.import.images");
+    }
+
+    /**
+     * Import every record of {@code content} into the catalog
+     *
+     * @param imageSource directory or .zip archive, relative to catalog.import.root, holding the
+     *                    files named by records' "image" field; null if records carry no images
+     * @return the final report; status FAILED if the input broke off, with earlier batches kept
+     * @throws IllegalArgumentException if the image source is outside the import root or missing
+     */
+    public CatalogImportReport importCatalog(InputStream content, CatalogRecordReader.Format format, String imageSource)
+            throws IOException {
+        ImportProgress progress = new ImportProgress("import-" + UUID.randomUUID(), format);
+        try (ImageSource images = openImageSource(imageSource);
+             CatalogRecordReader reader = new CatalogRecordReader(content, format, objectMapper);
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            activeImports.put(progress.importId, progress);
+            log.info("Started catalog import {} ({}, images: {})", progress.importId, format,
+                    imageSource != null ? imageSource : "none");
+
+            Semaphore imagePermits = new Semaphore(imageParallelism);
+            Set<String> seenIds = new HashSet<>();
+            List<CatalogRecordReader.Record> batch = new ArrayList<>(batchSize);
+            CatalogRecordReader.Record record;
+            while ((record = reader.next()) != null) {
+                batch.add(record);
+                if (batch.size() == batchSize) {
+                    importBatch(batch, images, executor, imagePermits, seenIds, progress);
+                    batch.clear();
+                }
+            }
+            importBatch(batch, images, executor, imagePermits, seenIds, progress);
+            progress.status = ImportStatus.COMPLETED;
+        } catch (IOException | IllegalArgumentException e) {
+            if (progress.recordsRead.get() == 0 && e instanceof IllegalArgumentException) {
+                throw e;
+            }
+            progress.status = ImportStatus.FAILED;
+            progress.errorMessage = e.getMessage();
+            log.error("Catalog import {} stopped after {} records: {}",
+                    progress.importId, progress.recordsRead.get(), e.getMessage());
+        } finally {
+            activeImports.remove(progress.importId);
+        }
+
+        CatalogImportReport report = progress.snapshot();
+        log.info("Finished catalog import {}: {} imported, {} failed, {} images in {}ms ({} records/s)",
+                report.getImportId(), report.getImported(), report.getFailed(), report.getImagesStored(),
+                report.getElapsedMs(), Math.round(report.getRecordsPerSecond()));
+        return report;
+    }
+
+    /**
+     * Progress of the imports currently running
+     */
+    public List<CatalogImportReport> activeImports() {
+        return activeImports.values().stream()
+                .map(ImportProgress::snapshot)
+                .toList();
+    }
+
+    private void importBatch(List<CatalogRecordReader.Record> batch, ImageSource images, ExecutorService executor,
+                             Semaphore imagePermits, Set<String> seenIds, ImportProgress progress) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        // Validate first so no image is stored for a record that would be rejected anyway
+        Map<String, CatalogRecordReader.Record> accepted = new LinkedHashMap<>();
+        for (CatalogRecordReader.Record record : batch) {
+            String error = validate(record, images, seenIds);
+            if (error != null) {
+                progress.fail(record, error);
+                continue;
+            }
+            if (record.id() != null) {
+                seenIds.add(record.id());
+            }
+            accepted.put(record.id() != null ? record.id() : UUID.randomUUID().toString(), record);
+        }
+
+        Map<String, Future<String>> storedImages = new LinkedHashMap<>();
+        for (Map.Entry<String, CatalogRecordReader.Record> entry : accepted.entrySet()) {
+            String image = entry.getValue().image();
+            if (image != null) {
+                storedImages.put(entry.getKey(), executor.submit(() -> storeImage(images, image, entry.getKey(), imagePermits)));
+            }
+        }
+
+        Map<String, ProductRequest> products = new LinkedHashMap<>();
+        for (Map.Entry<String, CatalogRecordReader.Record> entry : accepted.entrySet()) {
+            CatalogRecordReader.Record record = entry.getValue();
+            Future<String> storedImage = storedImages.get(entry.getKey());
+            if (storedImage != null) {
+                try {
+                    record.request().setImageUrl(storedImage.get());
+                    progress.imagesStored.incrementAndGet();
+                    imageCounter.increment();
+                } catch (ExecutionException e) {
+                    progress.fail(record, "Image " + record.image() + ": " + e.getCause().getMessage());
+                    continue;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted storing product images", e);
+                }
+            }
+            products.put(entry.getKey(), record.request());
+        }
+
+        productService.createProducts(products);
+        progress.imported.addAndGet(products.size());
+        importedCounter.increment(products.size());
+
+        long before = progress.recordsRead.get();
+        long after = progress.recordsRead.addAndGet(batch.size());
+        if (after / progressInterval > before / progressInterval) {
+            log.info("Catalog import {}: {} records read, {} imported, {} failed",
+                    progress.importId, after, progress.imported.get(), progress.failed.get());
+        }
+    }
+
+    /**
+     * @return why the record must be rejected, or null if it can be imported
+     */
+    private String validate(CatalogRecordReader.Record record, ImageSource images, Set<String> seenIds) {
+        if (record.error() != null) {
+            return record.error();
+        }
+        Set<ConstraintViolation<ProductRequest>> violations = validator.validate(record.request());
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+        if (record.id() != null && (seenIds.contains(record.id()) || productService.productExists(record.id()))) {
+            return "Product " + record.id() + " already exists";
+        }
+        if (record.image() != null && images == null) {
+            return "Record names an image but the import has no image source";
+        }
+        return null;
+    }
+
+    private String storeImage(ImageSource images, String image, String productId, Semaphore imagePermits)
+            throws IOException, InterruptedException {
+        imagePermits.acquire();
+        try (InputStream in = images.open(image)) {
+            String path = imageStorageService.ingestImage(in, "products", productId, image).path();
+            return imageStorageService.generatePublicUrl(path, "products");
+        } finally {
+            imagePermits.release();
+        }
+    }
+
+    /**
+     * Open the directory or zip archive images are read from
+     */
+    private ImageSource openImageSource(String imageSource) throws IOException {
+        if (imageSource == null || imageSource.isBlank()) {
+            return null;
+        }
+        Path root = Paths.get(importRoot).toAbsolutePath().normalize();
+        Path source = root.resolve(imageSource).normalize();
+        if (!source.startsWith(root)) {
+            throw new IllegalArgumentException("Image source must be inside the import directory");
+        }
+
+        if (Files.isDirectory(source)) {
+            return name -> {
+                Path file = source.resolve(name).normalize();
+                if (!file.startsWith(source) || !Files.isRegularFile(file)) {
+                    throw new IOException("not found in image directory");
+                }
+                return Files.newInputStream(file);
+            };
+        }
+        if (Files.isRegularFile(source) && source.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".zip")) {
+            // ZipFile serializes reads internally, so entries can be streamed from several threads
+            ZipFile archive = new ZipFile(source.toFile());
+            return new ImageSource() {
+                @Override
+                public InputStream open(String name) throws IOException {
+                    ZipEntry entry = archive.getEntry(name);
+                    if (entry == null || entry.isDirectory()) {
+                        throw new IOException("not found in image archive");
+                    }
+                    return archive.getInputStream(entry);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    archive.close();
+                }
+            };
+        }
+        throw new IllegalArgumentException("Image source not found: " + imageSource);
+    }
+
+    /**
+     * Where record images are read from
+     */
+    private interface ImageSource extends Closeable {
+
+        InputStream open(String name) throws IOException;
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    /**
+     * Counters of one import, updated by the importing thread and read by progress requests
+     */
+    private final class ImportProgress {
+        final String importId;
+        final CatalogRecordReader.Format format;
+        final LocalDateTime startedAt = LocalDateTime.now();
+        final long startNanos = System.nanoTime();
+        final AtomicLong recordsRead = new AtomicLong();
+        final AtomicLong imported = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong imagesStored = new AtomicLong();
+        final Queue<RecordFailure> failures = new ConcurrentLinkedQueue<>();
+        volatile ImportStatus status = ImportStatus.RUNNING;
+        volatile String errorMessage;
+
+        ImportProgress(String importId, CatalogRecordReader.Format format) {
+            this.importId = importId;
+            this.format = format;
+        }
+
+        void fail(CatalogRecordReader.Record record, String reason) {
+            failedCounter.increment();
+            if (failed.incrementAndGet() <= maxReportedFailures) {
+                ProductRequest request = record.request();
+                String product = request == null ? null
+                        : request.getSku() != null ? request.getSku() : request.getName();
+                failures.add(new RecordFailure(record.line(), product, reason));
+            }
+        }
+
+        CatalogImportReport snapshot() {
+            long elapsedNanos = System.nanoTime() - startNanos;
+            long read = recordsRead.get();
+            return CatalogImportReport.builder()
+                    .importId(importId)
+                    .format(format.name())
+                    .status(status)
+                    .recordsRead(read)
+                    .imported(imported.get())
+                    .failed(failed.get())
+                    .imagesStored(imagesStored.get())
+                    .startedAt(startedAt)
+                    .elapsedMs(elapsedNanos / 1_000_000)
+                    .recordsPerSecond(elapsedNanos > 0 ? read * 1e9 / elapsedNanos : 0)
+                    .errorMessage(errorMessage)
+                    .failures(List.copyOf(failures))
+                    .build();
+        }
+    }
+}
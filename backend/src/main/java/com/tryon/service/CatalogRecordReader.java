@@ -0,0 +1,256 @@
+package com.tryon.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tryon.dto.ProductRequest;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Incremental reader for catalog import files, one product per record
+ *
+ * NDJSON holds one JSON object per line with the fields of {@link ProductRequest}, plus optional
+ * "id" and "image" (a file name in the import's image source). CSV starts with a header row
+ * naming the same fields; sizes and colors are "|"-separated. Records are parsed as they are
+ * read, so a file of any size is held in memory one record at a time. A malformed record is
+ * returned with an error rather than ending the import.
+ *
+ * Not a Spring bean - one instance per import. Not thread-safe.
+ */
+public class CatalogRecordReader implements Closeable {
+
+    private static final int MAX_RECORD_CHARS = 64 * 1024;
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    /**
+     * One product record
+     *
+     * @param line line the record starts on, for error reports
+     * @param id requested product ID, or null to generate one
+     * @param image image file name in the import's image source, or null
+     * @param error why the record could not be parsed; the other fields are then unset
+     */
+    public record Record(long line, String id, ProductRequest request, String image, String error) {
+
+        static Record failed(long line, String error) {
+            return new Record(line, null, null, null, error);
+        }
+    }
+
+    private final Format format;
+    private final BufferedReader in;
+    private final ObjectMapper objectMapper;
+    private Map<String, Integer> columns;
+    private long line;
+
+    public CatalogRecordReader(InputStream content, Format format, ObjectMapper objectMapper) {
+        this.format = format;
+        this.in = new BufferedReader(new InputStreamReader(content, StandardCharsets.UTF_8), 64 * 1024);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @return the next record, or null at the end of the input
+     * @throws IllegalArgumentException if a CSV file has no usable header row
+     */
+    public Record next() throws IOException {
+        return format == Format.NDJSON ? nextJson() : nextCsv();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private Record nextJson() throws IOException {
+        String text;
+        do {
+            text = readLine();
+            if (text == null) {
+                return null;
+            }
+        } while (text.isBlank());
+
+        long start = line;
+        if (text.length() > MAX_RECORD_CHARS) {
+            return Record.failed(start, "Record exceeds " + MAX_RECORD_CHARS + " characters");
+        }
+        try {
+            JsonNode node = objectMapper.readTree(text);
+            if (!node.isObject()) {
+                return Record.failed(start, "Expected a JSON object");
+            }
+            ProductRequest request = objectMapper.treeToValue(node, ProductRequest.class);
+            return new Record(start, textOf(node, "id"), request, textOf(node, "image"), null);
+        } catch (JsonProcessingException e) {
+            return Record.failed(start, "Invalid JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private Record nextCsv() throws IOException {
+        if (columns == null) {
+            List<String> header = readCsvRecord();
+            if (header == null) {
+                return null;
+            }
+            columns = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+            if (!columns.containsKey("name")) {
+                throw new IllegalArgumentException("CSV header must include a 'name' column");
+            }
+        }
+
+        List<String> fields;
+        long start;
+        do {
+            start = line + 1;
+            fields = readCsvRecord();
+            if (fields == null) {
+                return null;
+            }
+        } while (fields.size() == 1 && fields.get(0).isBlank());
+        if (fields.isEmpty()) {
+            return Record.failed(start, "Record exceeds " + MAX_RECORD_CHARS + " characters");
+        }
+
+        ProductRequest request = new ProductRequest();
+        request.setName(column(fields, "name"));
+        request.setSku(column(fields, "sku"));
+        request.setColor(column(fields, "color"));
+        request.setDescription(column(fields, "description"));
+        request.setCategory(column(fields, "category"));
+        request.setImageUrl(column(fields, "imageurl"));
+        request.setSizes(listColumn(fields, "sizes"));
+        request.setColors(listColumn(fields, "colors"));
+        String price = column(fields, "price");
+        if (price != null) {
+            try {
+                request.setPrice(Double.parseDouble(price));
+            } catch (NumberFormatException e) {
+                return Record.failed(start, "Invalid price: " + price);
+            }
+        }
+        return new Record(start, column(fields, "id"), request, column(fields, "image"), null);
+    }
+
+    /**
+     * Read one CSV record, which may span lines inside quotes
+     *
+     * @return the fields, an empty list if the record is too long, or null at end of input
+     */
+    private List<String> readCsvRecord() throws IOException {
+        int c = in.read();
+        if (c < 0) {
+            return null;
+        }
+        line++;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int length = 0;
+        boolean overflow = false;
+        while (c >= 0) {
+            if (++length > MAX_RECORD_CHARS) {
+                overflow = true;
+            }
+            if (quoted) {
+                if (c == '"') {
+                    in.mark(1);
+                    int next = in.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        if (next >= 0) {
+                            in.reset();
+                        }
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            if (overflow) {
+                // Skip the rest of the record without keeping it
+                field.setLength(0);
+                fields.clear();
+            }
+            c = in.read();
+        }
+        if (overflow) {
+            return List.of();
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder text = new StringBuilder();
+        int c = in.read();
+        if (c < 0) {
+            return null;
+        }
+        line++;
+        while (c >= 0 && c != '\n') {
+            // Keep one character past the limit so the caller can tell the record is too long
+            if (c != '\r' && text.length() <= MAX_RECORD_CHARS) {
+                text.append((char) c);
+            }
+            c = in.read();
+        }
+        return text.toString();
+    }
+
+    private String column(List<String> fields, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private List<String> listColumn(List<String> fields, String name) {
+        String value = column(fields, name);
+        if (value == null) {
+            return null;
+        }
+        return Arrays.stream(value.split("\\|"))
+                .map(String::trim)
+                .filter(item -> !item.isEmpty())
+                .toList();
+    }
+
+    private static String textOf(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value != null && value.isValueNode() && !value.asText().isBlank() ? value.asText() : null;
+    }
+}
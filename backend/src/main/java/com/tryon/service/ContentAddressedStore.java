@@ -0,0 +1,448 @@
+package com.tryon.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Deduplicating, content-addressed store behind the image directories
+ *
+ * Each distinct image is kept once as a blob named by its SHA-256, sharded by hash prefix
+ * (blobs/ab/cd/abcd....jpg). The names the rest of the application uses - storage/user/<uuid>.jpg,
+ * storage/results/<jobId>.png - become aliases: hard links to the blob, recorded in an alias index
+ * persisted in an append-only {@link MappedRecordLog}. A blob's reference count is the number of
+ * aliases pointing at it; the blob is deleted when its last alias is released.
+ *
+ * Blobs are written to a temp file and renamed into place, so a blob path never exposes a partial
+ * file. If the filesystem cannot hard-link, the alias is a copy and only the index is shared.
+ *
+ * Lookups read the index without locking. Writers lock only the alias name and the blob they
+ * touch (striped), so file operations and index appends for unrelated images run in parallel;
+ * compaction briefly excludes index updates so its snapshot matches the log.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ContentAddressedStore {
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final int LOCK_STRIPES = 64;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${storage.blobs.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.blobs.directory:./storage/blobs}")
+    private String blobsDirectory;
+
+    @Value("${storage.blobs.index-path:./storage/blobs/aliases.log}")
+    private String indexPath;
+
+    @Value("${storage.blobs.compaction.min-records:10000}")
+    private long compactionMinRecords;
+
+    @Value("${storage.blobs.compaction.garbage-ratio:2.0}")
+    private double compactionGarbageRatio;
+
+    // Alias file (absolute, normalized) -> blob name; reference counts are derived from it
+    private final Map<String, String> aliases = new ConcurrentHashMap<>();
+    private final Map<String, Integer> referenceCounts = new ConcurrentHashMap<>();
+
+    // An alias stripe orders operations on one name; a blob stripe orders reference counting with
+    // the blob file's creation and deletion. Alias stripes are always taken before blob stripes.
+    // ReentrantLock rather than synchronized so virtual threads are not pinned during file operations
+    private final ReentrantLock[] aliasLocks = stripes();
+    private final ReentrantLock[] blobLocks = stripes();
+
+    // Shared by index updates (log append + map change), exclusive while compaction snapshots the map
+    private final ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+
+    private MappedRecordLog indexLog;
+    private Counter newBlobCounter;
+    private Counter duplicateCounter;
+
+    @PostConstruct
+    void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(Paths.get(blobsDirectory));
+        indexLog = new MappedRecordLog(Paths.get(indexPath), 1024 * 1024, true);
+        long records = indexLog.replay(this::applyRecord);
+        int orphans = deleteUnreferencedBlobs();
+        log.info("Opened blob store {}: replayed {} alias records, {} aliases over {} blobs ({} orphaned blobs removed)",
+                blobsDirectory, records, aliases.size(), referenceCounts.size(), orphans);
+
+        newBlobCounter = meterRegistry.counter("tryon.blobs.writes", "result", "new");
+        duplicateCounter = meterRegistry.counter("tryon.blobs.writes", "result", "duplicate");
+        Gauge.builder("tryon.blobs.count", referenceCounts, Map::size)
+                .description("Distinct image blobs stored")
+                .register(meterRegistry);
+        Gauge.builder("tryon.blobs.aliases", aliases, Map::size)
+                .description("Image file names pointing at stored blobs")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (indexLog != null) {
+            indexLog.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Store a fully written temp file under its content hash and expose it as {@code alias}
+     *
+     * The temp file is consumed: moved into the store when the content is new, deleted when an
+     * identical blob already exists. An existing alias of the same name is replaced.
+     *
+     * @param sha256 hex SHA-256 of the temp file's content
+     * @param extension file extension for the blob, matching the alias's
+     */
+    public void put(Path tempFile, String sha256, String extension, Path alias) throws IOException {
+        String blobName = sha256 + "." + extension;
+        Path blob = blobPath(blobName);
+
+        ReentrantLock aliasLock = aliasLock(alias);
+        aliasLock.lock();
+        try {
+            ReentrantLock blobLock = blobLock(blobName);
+            blobLock.lock();
+            try {
+                if (referenceCounts.containsKey(blobName) && Files.exists(blob)) {
+                    Files.delete(tempFile);
+                    duplicateCounter.increment();
+                } else {
+                    Files.createDirectories(blob.getParent());
+                    Files.move(tempFile, blob, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    newBlobCounter.increment();
+                }
+                referenceCounts.merge(blobName, 1, Integer::sum);
+            } finally {
+                blobLock.unlock();
+            }
+            bind(alias, blobName, blob);
+        } finally {
+            aliasLock.unlock();
+        }
+    }
+
+    /**
+     * Expose the blob behind {@code existingAlias} under another name, without copying
+     *
+     * @return false if {@code existingAlias} is not in the store
+     */
+    public boolean link(Path existingAlias, Path alias) throws IOException {
+        if (!enabled) {
+            return false;
+        }
+        ReentrantLock aliasLock = aliasLock(alias);
+        aliasLock.lock();
+        try {
+            String blobName = aliases.get(key(existingAlias));
+            if (blobName == null) {
+                return false;
+            }
+            Path blob = blobPath(blobName);
+            // The existing alias may be released concurrently: take a reference only if the blob is still there
+            ReentrantLock blobLock = blobLock(blobName);
+            blobLock.lock();
+            try {
+                if (!referenceCounts.containsKey(blobName) || !Files.exists(blob)) {
+                    return false;
+                }
+                referenceCounts.merge(blobName, 1, Integer::sum);
+            } finally {
+                blobLock.unlock();
+            }
+            bind(alias, blobName, blob);
+            duplicateCounter.increment();
+            return true;
+        } finally {
+            aliasLock.unlock();
+        }
+    }
+
+    /**
+     * Move an alias to a new name, keeping its blob reference
+     *
+     * @return false if the alias is not in the store
+     */
+    public boolean rename(Path alias, Path newAlias) throws IOException {
+        if (!enabled) {
+            return false;
+        }
+        // Both names locked in stripe order, so two renames in opposite directions cannot deadlock
+        ReentrantLock first = aliasLock(alias);
+        ReentrantLock second = aliasLock(newAlias);
+        if (stripe(key(alias)) > stripe(key(newAlias))) {
+            ReentrantLock swap = first;
+            first = second;
+            second = swap;
+        }
+        first.lock();
+        second.lock();
+        try {
+            String blobName = aliases.get(key(alias));
+            if (blobName == null) {
+                return false;
+            }
+            Files.createDirectories(newAlias.toAbsolutePath().getParent());
+            Files.move(alias, newAlias, StandardCopyOption.ATOMIC_MOVE);
+
+            // New name recorded before the old one is dropped, so a crash never leaves the blob unreferenced
+            String replaced;
+            indexLock.readLock().lock();
+            try {
+                indexLog.append(encodePut(key(newAlias), blobName));
+                replaced = aliases.put(key(newAlias), blobName);
+                indexLog.append(encodeDelete(key(alias)));
+                aliases.remove(key(alias));
+            } finally {
+                indexLock.readLock().unlock();
+            }
+            if (replaced != null) {
+                dereference(replaced);
+            }
+            return true;
+        } finally {
+            second.unlock();
+            first.unlock();
+        }
+    }
+
+    /**
+     * Blob an alias points at, for serving every alias of an image from one file
+     */
+    public Optional<Path> resolve(Path alias) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String blobName = aliases.get(key(alias));
+        return blobName != null ? Optional.of(blobPath(blobName)) : Optional.empty();
+    }
+
+    /**
+     * Remove an alias, deleting its blob when no other alias refers to it
+     *
+     * @return false if the alias was not created by this store (e.g. a file from before the
+     *         store was enabled), which the caller then deletes directly
+     */
+    public boolean release(Path alias) throws IOException {
+        if (!enabled) {
+            return false;
+        }
+        String aliasKey = key(alias);
+        ReentrantLock aliasLock = aliasLock(alias);
+        aliasLock.lock();
+        try {
+            String blobName = aliases.get(aliasKey);
+            if (blobName == null) {
+                return false;
+            }
+            indexLock.readLock().lock();
+            try {
+                indexLog.append(encodeDelete(aliasKey));
+                aliases.remove(aliasKey);
+            } finally {
+                indexLock.readLock().unlock();
+            }
+            Files.deleteIfExists(alias);
+            dereference(blobName);
+            return true;
+        } finally {
+            aliasLock.unlock();
+        }
+    }
+
+    /**
+     * Rewrite the alias index with live aliases only once it is mostly superseded records
+     */
+    @Scheduled(fixedDelayString = "${storage.blobs.compaction.interval-ms:300000}")
+    public void compact() {
+        if (!enabled) {
+            return;
+        }
+        // Index lock before log lock, the same order as every append
+        indexLock.writeLock().lock();
+        try {
+            long records = indexLog.getRecordCount();
+            if (records < compactionMinRecords || records < aliases.size() * compactionGarbageRatio) {
+                return;
+            }
+            indexLog.rewrite(() -> {
+                List<byte[]> live = new ArrayList<>(aliases.size());
+                aliases.forEach((alias, blobName) -> live.add(encodePut(alias, blobName)));
+                return live;
+            });
+            log.info("Compacted blob alias index: {} records -> {}", records, indexLog.getRecordCount());
+        } catch (IOException e) {
+            log.error("Blob alias index compaction failed: {}", e.getMessage(), e);
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Point {@code alias} at a blob on disk and record it
+     *
+     * The caller holds the alias's lock and has already counted the new reference to the blob,
+     * which is dropped again if binding fails.
+     */
+    private void bind(Path alias, String blobName, Path blob) throws IOException {
+        String aliasKey = key(alias);
+        String previous;
+        try {
+            Files.createDirectories(alias.toAbsolutePath().getParent());
+            Files.deleteIfExists(alias);
+            try {
+                Files.createLink(alias, blob);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(blob, alias, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            // The link exists before the record: a crash in between leaves an unindexed alias, which
+            // behaves like any pre-existing file, and an unreferenced blob that the next startup removes
+            indexLock.readLock().lock();
+            try {
+                indexLog.append(encodePut(aliasKey, blobName));
+                previous = aliases.put(aliasKey, blobName);
+            } finally {
+                indexLock.readLock().unlock();
+            }
+        } catch (IOException | RuntimeException e) {
+            dereference(blobName);
+            throw e;
+        }
+        if (previous != null) {
+            dereference(previous);
+        }
+    }
+
+    private void dereference(String blobName) throws IOException {
+        ReentrantLock blobLock = blobLock(blobName);
+        blobLock.lock();
+        try {
+            if (referenceCounts.merge(blobName, -1, Integer::sum) > 0) {
+                return;
+            }
+            referenceCounts.remove(blobName);
+            Files.deleteIfExists(blobPath(blobName));
+        } finally {
+            blobLock.unlock();
+        }
+        log.debug("Deleted unreferenced blob {}", blobName);
+    }
+
+    /**
+     * Delete blobs no alias refers to. Aliases are hard links, so this never removes an
+     * unindexed alias's content.
+     */
+    private int deleteUnreferencedBlobs() throws IOException {
+        Path root = Paths.get(blobsDirectory);
+        int deleted = 0;
+        try (Stream<Path> files = Files.walk(root, 3)) {
+            // Blobs sit exactly two shard levels down; anything else (the alias index) is not a blob
+            List<Path> blobs = files
+                    .filter(file -> root.relativize(file).getNameCount() == 3 && Files.isRegularFile(file))
+                    .toList();
+            for (Path blob : blobs) {
+                if (!referenceCounts.containsKey(blob.getFileName().toString()) && Files.deleteIfExists(blob)) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private Path blobPath(String blobName) {
+        return Paths.get(blobsDirectory, blobName.substring(0, 2), blobName.substring(2, 4), blobName);
+    }
+
+    private ReentrantLock aliasLock(Path alias) {
+        return aliasLocks[stripe(key(alias))];
+    }
+
+    private ReentrantLock blobLock(String blobName) {
+        return blobLocks[stripe(blobName)];
+    }
+
+    private static int stripe(String key) {
+        return Math.floorMod(key.hashCode(), LOCK_STRIPES);
+    }
+
+    private static ReentrantLock[] stripes() {
+        ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+
+    private static String key(Path alias) {
+        return alias.toAbsolutePath().normalize().toString();
+    }
+
+    private void applyRecord(ByteBuffer record) {
+        byte op = record.get();
+        byte[] body = new byte[record.remaining()];
+        record.get(body);
+        String[] fields = new String(body, StandardCharsets.UTF_8).split("\0", 2);
+        if (op == OP_PUT && fields.length == 2) {
+            String previous = aliases.put(fields[0], fields[1]);
+            if (previous != null) {
+                referenceCounts.computeIfPresent(previous, (blob, count) -> count > 1 ? count - 1 : null);
+            }
+            referenceCounts.merge(fields[1], 1, Integer::sum);
+        } else if (op == OP_DELETE) {
+            String previous = aliases.remove(fields[0]);
+            if (previous != null) {
+                referenceCounts.computeIfPresent(previous, (blob, count) -> count > 1 ? count - 1 : null);
+            }
+        }
+    }
+
+    private static byte[] encodePut(String alias, String blobName) {
+        return withOp(OP_PUT, (alias + "\0" + blobName).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] encodeDelete(String alias) {
+        return withOp(OP_DELETE, alias.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] withOp(byte op, byte[] body) {
+        byte[] record = new byte[body.length + 1];
+        record[0] = op;
+        System.arraycopy(body, 0, record, 1, body.length);
+        return record;
+    }
+}
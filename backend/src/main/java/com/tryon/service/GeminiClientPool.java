@@ -0,0 +1,103 @@
+package com.tryon.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of concurrent Gemini request slots
+ *
+ * The JDK HttpClient manages its connections internally and exposes no pool statistics,
+ * so concurrency is capped here instead: each call leases a slot for the whole exchange
+ * (request upload and response download). Exposes gemini.http.pool.leased / pending / idle gauges.
+ *
+ * When all slots are leased, platform threads wait up to the acquire timeout so a worker is not
+ * held indefinitely. Virtual threads wait for a slot without a timeout: in virtual execution mode
+ * tryon.execution.max-in-flight admits far more jobs than there are slots, and the jobs beyond
+ * the slot count are meant to queue here (in arrival order) rather than fail.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GeminiClientPool {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${gemini.http.max-concurrent-requests:64}")
+    private int maxConcurrentRequests;
+
+    @Value("${gemini.http.acquire-timeout:30s}")
+    private Duration acquireTimeout;
+
+    private Semaphore slots;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * Work done while holding a slot
+     */
+    @FunctionalInterface
+    public interface Exchange<T> {
+        T execute() throws IOException;
+    }
+
+    @PostConstruct
+    void init() {
+        slots = new Semaphore(maxConcurrentRequests, true);
+
+        Gauge.builder("gemini.http.pool.leased", this, GeminiClientPool::getLeased)
+                .description("Gemini requests in flight")
+                .register(meterRegistry);
+        Gauge.builder("gemini.http.pool.pending", pending, AtomicInteger::get)
+                .description("Gemini requests waiting for a free slot")
+                .register(meterRegistry);
+        Gauge.builder("gemini.http.pool.idle", slots, Semaphore::availablePermits)
+                .description("Free Gemini request slots")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run an exchange while holding a request slot
+     */
+    public <T> T execute(Exchange<T> exchange) throws IOException {
+        pending.incrementAndGet();
+        boolean acquired;
+        try {
+            if (Thread.currentThread().isVirtual()) {
+                slots.acquire();
+                acquired = true;
+            } else {
+                acquired = slots.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a Gemini request slot", e);
+        } finally {
+            pending.decrementAndGet();
+        }
+
+        if (!acquired) {
+            log.warn("No Gemini request slot free after {} ({} in flight)", acquireTimeout, getLeased());
+            throw new IOException("Timed out waiting for a Gemini request slot");
+        }
+
+        try {
+            return exchange.execute();
+        } finally {
+            slots.release();
+        }
+    }
+
+    public int getLeased() {
+        return maxConcurrentRequests - slots.availablePermits();
+    }
+}
@@ -1,19 +1,22 @@
 package com.tryon.service;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.StreamingHttpOutputMessage;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RequestCallback;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.Path;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
@@ -32,67 +35,75 @@ import java.util.*;
  * Uses the new Gemini 2.5 Flash Image Preview model for enhanced image generation.
  */
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class GeminiImageService {
 
-        @Value("${gemini.api-key}")
+    private final GeminiRequestWriter requestWriter;
+    private final GeminiResponseReader responseReader;
+    private final GeminiClientPool clientPool;
+
+    // Pooled JDK HttpClient with configured timeouts, see GeminiHttpClientConfig
+    private final RestTemplate geminiRestTemplate;
+
+    @Value("${gemini.api-key}")
     private String apiKey;
     
     @Value("${gemini.api-url}")
     private String geminiApiUrl;
-    private final RestTemplate restTemplate = new RestTemplate();
 
     /**
      * Generate virtual try-on image using Gemini API
      * Combines product image and customer image with AI-generated realistic try-on result
      *
-     * @param productImagePath Path to the product image file
-     * @param customerImagePath Path to the customer image file  
+     * @param productImage Product image part, labelled with its actual MIME type
+     * @param customerImage Customer image part, labelled with its actual MIME type
      * @param prompt Detailed prompt for virtual try-on generation
-     * @return Generated try-on image as byte array
+     * @param target File the generated image is decoded into
+     * @return MIME type of the generated image
      */
-    public byte[] generateVirtualTryOnImage(String productImagePath, String customerImagePath, String prompt) throws IOException {
+    public String generateVirtualTryOnImage(GeminiRequestWriter.ImagePart productImage,
+                                            GeminiRequestWriter.ImagePart customerImage,
+                                            String prompt, Path target) throws IOException {
         if (!isGeminiApiAvailable()) {
             throw new IllegalStateException("GEMINI_API_KEY not configured. Please set the environment variable.");
         }
 
         log.info("Starting virtual try-on generation with Gemini API");
-        log.debug("Product image: {}, Customer image: {}", productImagePath, customerImagePath);
+        log.debug("Product image: {}, Customer image: {}", productImage.mimeType(), customerImage.mimeType());
 
         try {
-            // Read image files
-            byte[] productImageData = Files.readAllBytes(Paths.get(productImagePath));
-            byte[] customerImageData = Files.readAllBytes(Paths.get(customerImagePath));
-
-            log.info("Loaded images - Product: {} bytes, Customer: {} bytes", 
-                    productImageData.length, customerImageData.length);
-
-            // Create request payload for Gemini API
-            Map<String, Object> requestBody = createTryOnRequestBody(prompt, productImageData, customerImageData);
-
-            // Set headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("x-goog-api-key", apiKey);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
+            // Images are Base64-encoded straight from disk into the request body
+            List<GeminiRequestWriter.ImagePart> images = List.of(productImage, customerImage);
+
+            RequestCallback requestCallback = request -> {
+                request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                request.getHeaders().set("x-goog-api-key", apiKey);
+                if (request instanceof StreamingHttpOutputMessage streaming) {
+                    streaming.setBody(out -> requestWriter.writeTryOnRequest(out, prompt, images));
+                } else {
+                    requestWriter.writeTryOnRequest(request.getBody(), prompt, images);
+                }
+            };
 
             log.info("Calling Gemini API for virtual try-on generation...");
 
-            // Call Gemini API
-            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
+            // Call Gemini API - non-2xx responses are raised by the RestTemplate error handler.
+            // The generated image is decoded from the response stream straight into the target file.
+            String mimeType = clientPool.execute(() -> geminiRestTemplate.execute(
                 geminiApiUrl,
                 HttpMethod.POST,
-                entity,
-                new ParameterizedTypeReference<Map<String, Object>>() {}
-            );
+                requestCallback,
+                response -> {
+                    log.info("Gemini API call successful, processing response...");
+                    try (OutputStream out = Files.newOutputStream(target)) {
+                        return responseReader.readInlineImage(response.getBody(), out);
+                    }
+                }
+            ));
 
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                log.info("Gemini API call successful, processing response...");
-                return processGeminiResponse(response.getBody());
-            } else {
-                throw new RuntimeException("Gemini API returned error: " + response.getStatusCode());
-            }
+            log.info("Stored generated image ({}, {} bytes) at {}", mimeType, Files.size(target), target);
+            return mimeType;
 
         } catch (Exception e) {
             log.error("Error generating virtual try-on with Gemini API: {}", e.getMessage(), e);
@@ -100,113 +111,6 @@ public class GeminiImageService {
         }
     }
 
-        /**
-     * Create request body for Gemini 2.5 Flash Image API virtual try-on
-     */
-    private Map<String, Object> createTryOnRequestBody(String prompt, byte[] productImage, byte[] customerImage) {
-        Map<String, Object> requestBody = new HashMap<>();
-        
-        // Create contents array with prompt and images
-        List<Map<String, Object>> contents = new ArrayList<>();
-        Map<String, Object> content = new HashMap<>();
-        
-        List<Object> parts = new ArrayList<>();
-        
-        // Add text prompt
-        Map<String, Object> textPart = Map.of("text", prompt);
-        parts.add(textPart);
-        
-        // Add product image
-        Map<String, Object> productImagePart = Map.of(
-            "inline_data", Map.of(
-                "mime_type", "image/jpeg",
-                "data", Base64.getEncoder().encodeToString(productImage)
-            )
-        );
-        parts.add(productImagePart);
-        
-        // Add customer image
-        Map<String, Object> customerImagePart = Map.of(
-            "inline_data", Map.of(
-                "mime_type", "image/jpeg", 
-                "data", Base64.getEncoder().encodeToString(customerImage)
-            )
-        );
-        parts.add(customerImagePart);
-        
-        content.put("parts", parts);
-        contents.add(content);
-        requestBody.put("contents", contents);
-        
-        // Add generation config for image output
-        Map<String, Object> generationConfig = Map.of(
-            "temperature", 0.4,
-            "topK", 32,
-            "topP", 1.0,
-            "maxOutputTokens", 4096,
-            "responseMimeType", "application/json"
-        );
-        requestBody.put("generationConfig", generationConfig);
-        
-        // Add safety settings
-        List<Map<String, Object>> safetySettings = List.of(
-            Map.of("category", "HARM_CATEGORY_HARASSMENT", "threshold", "BLOCK_MEDIUM_AND_ABOVE"),
-            Map.of("category", "HARM_CATEGORY_HATE_SPEECH", "threshold", "BLOCK_MEDIUM_AND_ABOVE"),
-            Map.of("category", "HARM_CATEGORY_SEXUALLY_EXPLICIT", "threshold", "BLOCK_MEDIUM_AND_ABOVE"),
-            Map.of("category", "HARM_CATEGORY_DANGEROUS_CONTENT", "threshold", "BLOCK_MEDIUM_AND_ABOVE")
-        );
-        requestBody.put("safetySettings", safetySettings);
-        
-        return requestBody;
-    }
-
-    /**
-     * Process Gemini 2.5 Flash Image API response and extract generated image
-     */
-    @SuppressWarnings("unchecked")
-    private byte[] processGeminiResponse(Map<String, Object> responseBody) {
-        try {
-            log.debug("Processing Gemini 2.5 Flash Image response: {}", responseBody);
-            
-            // Navigate response structure: candidates[0].content.parts[]
-            List<Map<String, Object>> candidates = (List<Map<String, Object>>) responseBody.get("candidates");
-            if (candidates == null || candidates.isEmpty()) {
-                throw new RuntimeException("No candidates found in Gemini response");
-            }
-
-            Map<String, Object> firstCandidate = candidates.get(0);
-            log.debug("Processing first candidate: {}", firstCandidate);
-
-            Map<String, Object> content = (Map<String, Object>) firstCandidate.get("content");
-            if (content == null) {
-                throw new RuntimeException("No content found in candidate");
-            }
-
-            List<Map<String, Object>> parts = (List<Map<String, Object>>) content.get("parts");
-            if (parts == null || parts.isEmpty()) {
-                throw new RuntimeException("No parts found in content");
-            }
-
-            // Look for parts with inline_data (generated images)
-            for (Map<String, Object> part : parts) {
-                if (part.containsKey("inline_data")) {
-                    Map<String, Object> inlineData = (Map<String, Object>) part.get("inline_data");
-                    if (inlineData.containsKey("data")) {
-                        String base64Data = (String) inlineData.get("data");
-                        log.info("Found generated image in response, size: {} characters", base64Data.length());
-                        return Base64.getDecoder().decode(base64Data);
-                    }
-                }
-            }
-            
-            throw new RuntimeException("No image data found in Gemini response parts");
-            
-        } catch (Exception e) {
-            log.error("Error processing Gemini response: {}", e.getMessage(), e);
-            throw new RuntimeException("Failed to process Gemini API response: " + e.getMessage(), e);
-        }
-    }
-
     /**
      * Generate marketing images using Gemini 2.5 Flash Image
      * Example use case: Create lifestyle photos of products in different settings
@@ -227,9 +131,10 @@ public class GeminiImageService {
 
             // Add base image if provided
             if (baseImage != null) {
+                String mimeType = ImageCodec.sniffMimeType(baseImage, baseImage.length);
                 Map<String, Object> imagePart = Map.of(
                     "inlineData", Map.of(
-                        "mimeType", "image/jpeg",
+                        "mimeType", mimeType != null ? mimeType : "image/jpeg",
                         "data", Base64.getEncoder().encodeToString(baseImage)
                     )
                 );
@@ -254,19 +159,19 @@ public class GeminiImageService {
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
 
             // Call Gemini API
-            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
+            byte[] imageData = clientPool.execute(() -> geminiRestTemplate.execute(
                 geminiApiUrl,
                 HttpMethod.POST,
-                entity,
-                new ParameterizedTypeReference<Map<String, Object>>() {}
-            );
-
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                log.info("Successfully generated marketing image with Gemini API");
-                return processGeminiResponse(response.getBody());
-            }
+                geminiRestTemplate.httpEntityCallback(entity),
+                response -> {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    responseReader.readInlineImage(response.getBody(), out);
+                    return out.toByteArray();
+                }
+            ));
 
-            throw new RuntimeException("Failed to generate marketing image with Gemini API");
+            log.info("Successfully generated marketing image with Gemini API");
+            return imageData;
 
         } catch (Exception e) {
             log.error("Error calling Gemini API for marketing image generation: {}", e.getMessage(), e);
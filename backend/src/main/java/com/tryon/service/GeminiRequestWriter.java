@@ -0,0 +1,161 @@
+package com.tryon.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Streams the Gemini generateContent request body straight to an output stream
+ *
+ * Images are Base64-encoded chunk by chunk from a file channel while the JSON is written,
+ * so neither the raw image bytes, the Base64 string nor the JSON document is ever held in
+ * memory as a whole.
+ */
+@Component
+@RequiredArgsConstructor
+public class GeminiRequestWriter {
+
+    private static final List<String> HARM_CATEGORIES = List.of(
+            "HARM_CATEGORY_HARASSMENT",
+            "HARM_CATEGORY_HATE_SPEECH",
+            "HARM_CATEGORY_SEXUALLY_EXPLICIT",
+            "HARM_CATEGORY_DANGEROUS_CONTENT"
+    );
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Image attached to a request as inline_data
+     */
+    public interface ImagePart {
+
+        String mimeType();
+
+        /**
+         * Write the image as the value of the current JSON field
+         */
+        void writeTo(JsonGenerator generator) throws IOException;
+    }
+
+    /**
+     * Image part streamed from a file on disk
+     */
+    public static ImagePart fromFile(Path path, String mimeType) {
+        return new ImagePart() {
+            @Override
+            public String mimeType() {
+                return mimeType;
+            }
+
+            @Override
+            public void writeTo(JsonGenerator generator) throws IOException {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                     InputStream in = Channels.newInputStream(channel)) {
+                    generator.writeBinary(in, (int) channel.size());
+                }
+            }
+        };
+    }
+
+    /**
+     * Image part from bytes already in memory
+     */
+    public static ImagePart fromBytes(byte[] data, String mimeType) {
+        return new ImagePart() {
+            @Override
+            public String mimeType() {
+                return mimeType;
+            }
+
+            @Override
+            public void writeTo(JsonGenerator generator) throws IOException {
+                generator.writeBinary(new ByteArrayInputStream(data), data.length);
+            }
+        };
+    }
+
+    /**
+     * Image part whose Base64 encoding has already been computed (ASCII bytes)
+     *
+     * Written as-is, so repeated requests with the same image skip encoding entirely.
+     */
+    public static ImagePart fromBase64(byte[] base64, String mimeType) {
+        return new ImagePart() {
+            @Override
+            public String mimeType() {
+                return mimeType;
+            }
+
+            @Override
+            public void writeTo(JsonGenerator generator) throws IOException {
+                // The Base64 alphabet needs no JSON escaping
+                generator.writeRawUTF8String(base64, 0, base64.length);
+            }
+        };
+    }
+
+    /**
+     * Write a virtual try-on request: prompt text followed by the product and customer images
+     */
+    public void writeTryOnRequest(OutputStream out, String prompt, List<ImagePart> images) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            // The HTTP layer owns the body stream
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+
+            generator.writeArrayFieldStart("contents");
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("parts");
+
+            generator.writeStartObject();
+            generator.writeStringField("text", prompt);
+            generator.writeEndObject();
+
+            for (ImagePart image : images) {
+                generator.writeStartObject();
+                generator.writeObjectFieldStart("inline_data");
+                generator.writeStringField("mime_type", image.mimeType());
+                generator.writeFieldName("data");
+                image.writeTo(generator);
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeEndArray();
+
+            // Generation config for image output
+            generator.writeObjectFieldStart("generationConfig");
+            generator.writeNumberField("temperature", 0.4);
+            generator.writeNumberField("topK", 32);
+            generator.writeNumberField("topP", 1.0);
+            generator.writeNumberField("maxOutputTokens", 4096);
+            generator.writeStringField("responseMimeType", "application/json");
+            generator.writeEndObject();
+
+            generator.writeArrayFieldStart("safetySettings");
+            for (String category : HARM_CATEGORIES) {
+                generator.writeStartObject();
+                generator.writeStringField("category", category);
+                generator.writeStringField("threshold", "BLOCK_MEDIUM_AND_ABOVE");
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+
+            generator.writeEndObject();
+        }
+    }
+}
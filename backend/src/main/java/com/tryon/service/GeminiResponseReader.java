@@ -0,0 +1,147 @@
+package com.tryon.service;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Streaming reader for Gemini generateContent responses
+ *
+ * Walks candidates[0].content.parts[] with a token parser and Base64-decodes the first
+ * inline image straight into the given output stream. The response is never materialized
+ * as a Map tree and the image is never held as a full-size String or byte array.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GeminiResponseReader {
+
+    private static final String DEFAULT_MIME_TYPE = "image/png";
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Decode the generated image from a response body into {@code out}
+     *
+     * @return MIME type reported for the image (image/png if the response omits it)
+     */
+    public String readInlineImage(InputStream body, OutputStream out) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT, "response");
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("candidates".equals(field)) {
+                    return readFirstCandidate(parser, out);
+                }
+                if ("error".equals(field)) {
+                    throw new RuntimeException("Gemini API returned error: " + parser.readValueAsTree());
+                }
+                parser.skipChildren();
+            }
+            throw new RuntimeException("No candidates found in Gemini response");
+        }
+    }
+
+    private String readFirstCandidate(JsonParser parser, OutputStream out) throws IOException {
+        expect(parser.currentToken(), JsonToken.START_ARRAY, "candidates");
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new RuntimeException("No candidates found in Gemini response");
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("content".equals(field)) {
+                return readContent(parser, out);
+            }
+            if ("finishReason".equals(field)) {
+                log.debug("Gemini candidate finish reason: {}", parser.getText());
+            }
+            parser.skipChildren();
+        }
+        throw new RuntimeException("No content found in candidate");
+    }
+
+    private String readContent(JsonParser parser, OutputStream out) throws IOException {
+        expect(parser.currentToken(), JsonToken.START_OBJECT, "content");
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("parts".equals(field)) {
+                return readParts(parser, out);
+            }
+            parser.skipChildren();
+        }
+        throw new RuntimeException("No parts found in content");
+    }
+
+    private String readParts(JsonParser parser, OutputStream out) throws IOException {
+        expect(parser.currentToken(), JsonToken.START_ARRAY, "parts");
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                // REST responses use camelCase; accept the snake_case form we send as well
+                if ("inlineData".equals(field) || "inline_data".equals(field)) {
+                    String mimeType = readInlineData(parser, out);
+                    if (mimeType != null) {
+                        return mimeType;
+                    }
+                } else if ("text".equals(field)) {
+                    log.debug("Gemini returned text part: {}", parser.getText());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        throw new RuntimeException("No image data found in Gemini response parts");
+    }
+
+    /**
+     * @return MIME type once image data has been written, or null if the object had no data
+     */
+    private String readInlineData(JsonParser parser, OutputStream out) throws IOException {
+        expect(parser.currentToken(), JsonToken.START_OBJECT, "inline data");
+
+        String mimeType = null;
+        boolean written = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("data".equals(field) && !written) {
+                int bytes = parser.readBinaryValue(Base64Variants.MIME_NO_LINEFEEDS, out);
+                log.info("Found generated image in response, size: {} bytes", bytes);
+                written = true;
+            } else if ("mimeType".equals(field) || "mime_type".equals(field)) {
+                mimeType = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (!written) {
+            return null;
+        }
+        return mimeType != null ? mimeType : DEFAULT_MIME_TYPE;
+    }
+
+    private void expect(JsonToken actual, JsonToken expected, String element) {
+        if (actual != expected) {
+            throw new RuntimeException("Unexpected Gemini response structure: " + element
+                    + " is " + actual + ", expected " + expected);
+        }
+    }
+}
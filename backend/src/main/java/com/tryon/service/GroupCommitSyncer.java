@@ -0,0 +1,238 @@
+package com.tryon.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Makes stored files durable with fsyncs batched across concurrent callers (storage.group-commit.enabled)
+ *
+ * Callers block in {@link #sync} until their files and the directories holding their names are
+ * flushed to disk. A single flusher thread collects every request that arrives within a short
+ * window and flushes them together, so jobs finishing at the same time share the directory
+ * fsyncs and wait on one flush instead of queueing behind each other's.
+ *
+ * Directories created for a file (e.g. the two shard levels under results/ and blobs/) are
+ * themselves names in their parents, so every ancestor up to storage.group-commit.root is
+ * flushed the first time a directory is seen; afterwards only the file's own directory is. A
+ * request fails if any of its files or directories could not be flushed.
+ *
+ * When disabled, {@link #sync} returns immediately and durability is left to the OS.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class GroupCommitSyncer {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${storage.group-commit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${storage.group-commit.max-batch:64}")
+    private int maxBatch;
+
+    @Value("${storage.group-commit.max-wait-ms:2}")
+    private long maxWaitMs;
+
+    @Value("${storage.group-commit.root:./storage}")
+    private String storageRoot;
+
+    private Path root;
+
+    private final BlockingQueue<SyncRequest> queue = new LinkedBlockingQueue<>();
+    private Thread flusher;
+
+    // Directories whose own entry is known to be on disk; only touched by the flusher thread
+    private final Set<Path> durableDirectories = new HashSet<>();
+
+    private Counter flushCounter;
+    private DistributionSummary batchSizes;
+
+    private record SyncRequest(List<Path> files, CompletableFuture<Void> done) {
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        root = Paths.get(storageRoot).toAbsolutePath().normalize();
+        flushCounter = meterRegistry.counter("tryon.storage.group-commit.flushes");
+        batchSizes = DistributionSummary.builder("tryon.storage.group-commit.batch-size")
+                .description("Sync requests served by one flush")
+                .register(meterRegistry);
+        flusher = Thread.ofPlatform().name("storage-group-commit").daemon(true).start(this::run);
+        log.info("Group commit enabled: up to {} requests per flush, {}ms window", maxBatch, maxWaitMs);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (flusher != null) {
+            flusher.interrupt();
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Block until the files' contents and their directory entries are on disk
+     *
+     * @param files files written or linked by the caller; several names of one inode are fine
+     */
+    public void sync(List<Path> files) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        SyncRequest request = new SyncRequest(files, new CompletableFuture<>());
+        queue.add(request);
+        try {
+            request.done().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for group commit");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        }
+    }
+
+    private void run() {
+        List<SyncRequest> batch = new ArrayList<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+
+                // Linger briefly so requests from jobs finishing together share this flush
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (batch.size() < maxBatch) {
+                    SyncRequest next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Shutting down: don't leave callers waiting forever
+        queue.drainTo(batch);
+        IOException stopped = new IOException("Group commit stopped");
+        batch.forEach(request -> request.done().completeExceptionally(stopped));
+    }
+
+    private void flush(List<SyncRequest> batch) {
+        // Each file with the directories whose flush it depends on
+        Map<Path, Set<Path>> files = new LinkedHashMap<>();
+        Set<Path> newDirectories = new LinkedHashSet<>();
+        for (SyncRequest request : batch) {
+            for (Path file : request.files()) {
+                Path absolute = file.toAbsolutePath().normalize();
+                Set<Path> directories = files.computeIfAbsent(absolute, f -> new LinkedHashSet<>());
+                directories.add(absolute.getParent());
+                // Walk up to the storage root until a directory whose entry is already durable
+                for (Path directory = absolute.getParent();
+                     directory.startsWith(root) && !directory.equals(root) && !durableDirectories.contains(directory);
+                     directory = directory.getParent()) {
+                    newDirectories.add(directory);
+                    directories.add(directory.getParent());
+                }
+            }
+        }
+
+        Map<Path, IOException> failures = new HashMap<>();
+        for (Path file : files.keySet()) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException e) {
+                failures.put(file, e);
+            }
+        }
+        files.values().stream().flatMap(Set::stream).distinct().forEach(directory -> {
+            IOException failure = forceDirectory(directory);
+            if (failure != null) {
+                failures.put(directory, failure);
+            }
+        });
+        for (Path directory : newDirectories) {
+            if (!failures.containsKey(directory.getParent())) {
+                durableDirectories.add(directory);
+            }
+        }
+
+        for (SyncRequest request : batch) {
+            IOException failure = request.files().stream()
+                    .map(file -> file.toAbsolutePath().normalize())
+                    .flatMap(file -> Stream.concat(Stream.of(file), files.get(file).stream()))
+                    .map(failures::get)
+                    .filter(Objects::nonNull)
+                    .findFirst()
+                    .orElse(null);
+            if (failure != null) {
+                request.done().completeExceptionally(failure);
+            } else {
+                request.done().complete(null);
+            }
+        }
+        flushCounter.increment();
+        batchSizes.record(batch.size());
+        if (!failures.isEmpty()) {
+            log.error("Group commit failed for {} of {} files and directories: {}",
+                    failures.size(), files.size() + failures.size(), failures.keySet());
+        }
+    }
+
+    /**
+     * Flush a directory so renames and links into it survive a crash
+     *
+     * @return the failure, or null if the directory was flushed (or cannot be on this platform)
+     */
+    private IOException forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+            return null;
+        } catch (IOException e) {
+            // Some platforms (e.g. Windows) cannot open directories; their metadata is journaled instead
+            if (System.getProperty("os.name", "").startsWith("Windows")) {
+                log.debug("Cannot fsync directory {}: {}", directory, e.getMessage());
+                return null;
+            }
+            return e;
+        }
+    }
+}
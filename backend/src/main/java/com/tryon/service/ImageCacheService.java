@@ -0,0 +1,217 @@
+package com.tryon.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory cache of served images
+ *
+ * Holds each hot image's bytes together with the metadata needed to answer a request without
+ * touching the filesystem: content type, strong ETag, last-modified time and length. Bounded by
+ * total bytes with least-recently-used eviction; every entry also counts a fixed overhead, so
+ * metadata-only entries are bounded too. Images larger than the per-entry limit keep only their
+ * metadata and are streamed from disk.
+ *
+ * ImageStorageService invalidates an entry whenever it writes, replaces or deletes the file. A
+ * load that overlaps an invalidation of the same path is served but not cached, so the old
+ * version is never put back after the new one was published.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImageCacheService {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    // Approximate heap cost of an entry beyond its bytes (map node, path, record, strings)
+    private static final int ENTRY_OVERHEAD_BYTES = 512;
+    private static final int GENERATION_STRIPES = 256;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${storage.image-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.image-cache.max-bytes:134217728}")
+    private long maxBytes;
+
+    @Value("${storage.image-cache.max-entry-bytes:4194304}")
+    private long maxEntryBytes;
+
+    // Access-ordered: iteration starts at the least recently used image
+    private final LinkedHashMap<Path, CachedImage> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    // Bumped by invalidate for the paths hashing to each stripe; guarded by lock
+    private final long[] generations = new long[GENERATION_STRIPES];
+
+    private Counter hitCounter;
+    private Counter missCounter;
+
+    /**
+     * A servable image
+     *
+     * @param data image bytes, or null when the image is too large to hold and must be read from {@code path}
+     */
+    public record CachedImage(Path path, String contentType, String etag, long lastModified, long length, byte[] data) {
+
+        long weight() {
+            return (data != null ? data.length : 0) + ENTRY_OVERHEAD_BYTES;
+        }
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        hitCounter = meterRegistry.counter("tryon.image-cache.requests", "result", "hit");
+        missCounter = meterRegistry.counter("tryon.image-cache.requests", "result", "miss");
+        Gauge.builder("tryon.image-cache.bytes", cachedBytes, AtomicLong::get)
+                .description("Image bytes held in memory for serving, including per-entry overhead")
+                .register(meterRegistry);
+        Gauge.builder("tryon.image-cache.entries", entries, Map::size)
+                .description("Images held in the serving cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Look up an image, loading and caching it on a miss
+     *
+     * @return empty if the file does not exist
+     */
+    public Optional<CachedImage> get(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+
+        long generation;
+        lock.lock();
+        try {
+            CachedImage cached = entries.get(key);
+            if (cached != null) {
+                hitCounter.increment();
+                return Optional.of(cached);
+            }
+            generation = generations[stripe(key)];
+        } finally {
+            lock.unlock();
+        }
+
+        missCounter.increment();
+        CachedImage loaded;
+        try {
+            loaded = load(key);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+        if (enabled) {
+            put(key, loaded, generation);
+        }
+        return Optional.of(loaded);
+    }
+
+    /**
+     * Drop a cached image after its file was written, replaced or deleted
+     */
+    public void invalidate(Path path) {
+        Path key = path.toAbsolutePath().normalize();
+        lock.lock();
+        try {
+            generations[stripe(key)]++;
+            CachedImage removed = entries.remove(key);
+            if (removed != null) {
+                cachedBytes.addAndGet(-removed.weight());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private CachedImage load(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long length = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String contentType = contentTypeOf(path);
+
+        if (!enabled || length > maxEntryBytes) {
+            // Too large to hold: size and modification time identify this version of the file
+            String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+            return new CachedImage(path, contentType, etag, lastModified, length, null);
+        }
+
+        byte[] data = Files.readAllBytes(path);
+        String etag = "\"" + HEX.formatHex(sha256().digest(data), 0, 16) + "\"";
+        return new CachedImage(path, contentType, etag, lastModified, data.length, data);
+    }
+
+    /**
+     * Cache a loaded image unless its path was invalidated since {@code generation} was read
+     */
+    private void put(Path key, CachedImage image, long generation) {
+        lock.lock();
+        try {
+            if (generations[stripe(key)] != generation) {
+                return;
+            }
+            CachedImage previous = entries.put(key, image);
+            long delta = image.weight() - (previous != null ? previous.weight() : 0);
+            cachedBytes.addAndGet(delta);
+
+            Iterator<CachedImage> eldest = entries.values().iterator();
+            while (cachedBytes.get() > maxBytes && eldest.hasNext()) {
+                CachedImage evicted = eldest.next();
+                eldest.remove();
+                cachedBytes.addAndGet(-evicted.weight());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int stripe(Path key) {
+        return Math.floorMod(key.hashCode(), GENERATION_STRIPES);
+    }
+
+    private String contentTypeOf(Path path) throws IOException {
+        String name = path.getFileName().toString().toLowerCase();
+        String extension = name.contains(".") ? name.substring(name.lastIndexOf('.') + 1) : "";
+        return switch (extension) {
+            case "jpg", "jpeg" -> MediaType.IMAGE_JPEG_VALUE;
+            case "png" -> MediaType.IMAGE_PNG_VALUE;
+            case "gif" -> MediaType.IMAGE_GIF_VALUE;
+            case "webp" -> "image/webp";
+            case "avif" -> "image/avif";
+            default -> {
+                String probed = Files.probeContentType(path);
+                yield probed != null ? probed : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+            }
+        };
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
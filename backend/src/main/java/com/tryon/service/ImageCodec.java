@@ -0,0 +1,284 @@
+package com.tryon.service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Image decoding, scaling, encoding and format sniffing shared by the image pipelines
+ *
+ * Not a Spring bean - stateless static helpers around javax.imageio.
+ */
+public final class ImageCodec {
+
+    private ImageCodec() {
+    }
+
+    /**
+     * Encodings ImageIO can write
+     */
+    public enum Format {
+        JPEG("jpg", "jpeg", "image/jpeg"),
+        PNG("png", "png", "image/png");
+
+        private final String extension;
+        private final String imageIoName;
+        private final String mimeType;
+
+        Format(String extension, String imageIoName, String mimeType) {
+            this.extension = extension;
+            this.imageIoName = imageIoName;
+            this.mimeType = mimeType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public String mimeType() {
+            return mimeType;
+        }
+
+        public static Format parse(String value) {
+            return switch (value.toLowerCase()) {
+                case "jpg", "jpeg" -> JPEG;
+                case "png" -> PNG;
+                default -> throw new IllegalArgumentException("Unsupported image format: " + value + " (use jpeg or png)");
+            };
+        }
+    }
+
+    /**
+     * Identify an image by its leading bytes rather than its name or the client's Content-Type
+     *
+     * @return MIME type, or null if the header matches no supported image format
+     */
+    public static String sniffMimeType(Path file) throws IOException {
+        byte[] header = new byte[16];
+        int read;
+        try (InputStream in = Files.newInputStream(file)) {
+            read = in.readNBytes(header, 0, header.length);
+        }
+        return sniffMimeType(header, read);
+    }
+
+    public static String sniffMimeType(byte[] header, int length) {
+        if (length >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+            return "image/jpeg";
+        }
+        if (length >= 8 && (header[0] & 0xFF) == 0x89 && header[1] == 'P' && header[2] == 'N' && header[3] == 'G') {
+            return "image/png";
+        }
+        if (length >= 12 && header[0] == 'R' && header[1] == 'I' && header[2] == 'F' && header[3] == 'F'
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return "image/webp";
+        }
+        if (length >= 12 && header[4] == 'f' && header[5] == 't' && header[6] == 'y' && header[7] == 'p'
+                && header[8] == 'a' && header[9] == 'v' && header[10] == 'i'
+                && (header[11] == 'f' || header[11] == 's')) {
+            return "image/avif";
+        }
+        if (length >= 4 && header[0] == 'G' && header[1] == 'I' && header[2] == 'F' && header[3] == '8') {
+            return "image/gif";
+        }
+        return null;
+    }
+
+    /**
+     * Decode an image upright, or return null if no installed ImageIO reader supports its format
+     *
+     * The dimensions are read from the header first, so an image that would expand to more than
+     * {@code maxPixels} is rejected before any pixel memory is allocated. A JPEG's EXIF
+     * Orientation is applied, since ImageIO ignores it and the re-encoded image carries no
+     * metadata.
+     *
+     * @throws IllegalArgumentException if the image has more than {@code maxPixels} pixels
+     */
+    public static BufferedImage read(Path file, long maxPixels) throws IOException {
+        int orientation = "image/jpeg".equals(sniffMimeType(file)) ? readExifOrientation(file) : 1;
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    throw new IllegalArgumentException("Image is too large: " + reader.getWidth(0) + "x"
+                            + reader.getHeight(0) + " pixels (limit " + maxPixels + ")");
+                }
+                return orient(reader.read(0), orientation);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * EXIF Orientation tag (1-8) of a JPEG, or 1 if it has none
+     */
+    static int readExifOrientation(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readUnsignedShort() != 0xFFD8) {
+                return 1;
+            }
+            while (true) {
+                int marker = in.readUnsignedShort();
+                // Start of scan or a non-marker: EXIF always precedes the image data
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA) {
+                    return 1;
+                }
+                int length = in.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return 1;
+                }
+                if (marker != 0xFFE1) {
+                    in.skipNBytes(length);
+                    continue;
+                }
+                byte[] segment = in.readNBytes(length);
+                if (segment.length == length && length > 14 && segment[0] == 'E' && segment[1] == 'x'
+                        && segment[2] == 'i' && segment[3] == 'f' && segment[4] == 0 && segment[5] == 0) {
+                    return orientationOf(ByteBuffer.wrap(segment, 6, length - 6).slice());
+                }
+            }
+        } catch (EOFException e) {
+            return 1;
+        }
+    }
+
+    /**
+     * Orientation entry of IFD0 in a TIFF structure
+     */
+    private static int orientationOf(ByteBuffer tiff) {
+        try {
+            tiff.order(tiff.get(0) == 'M' ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+            int ifd = tiff.getInt(4);
+            int entries = Short.toUnsignedInt(tiff.getShort(ifd));
+            for (int i = 0; i < entries; i++) {
+                int entry = ifd + 2 + i * 12;
+                // Tag 0x0112, type SHORT: the value sits in the first two bytes of the value field
+                if (Short.toUnsignedInt(tiff.getShort(entry)) == 0x0112 && tiff.getShort(entry + 2) == 3) {
+                    int orientation = Short.toUnsignedInt(tiff.getShort(entry + 8));
+                    return orientation >= 1 && orientation <= 8 ? orientation : 1;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // Truncated or malformed EXIF: treat as upright
+        }
+        return 1;
+    }
+
+    /**
+     * Rotate / mirror an image so that EXIF orientation {@code orientation} becomes upright
+     */
+    static BufferedImage orient(BufferedImage source, int orientation) {
+        if (orientation <= 1 || orientation > 8) {
+            return source;
+        }
+        double w = source.getWidth();
+        double h = source.getHeight();
+        // Maps source coordinates onto the upright image (x' = m00 x + m01 y + m02, y' = m10 x + m11 y + m12)
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);   // mirror horizontally
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);  // rotate 180
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);   // mirror vertically
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);    // transpose
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);   // rotate 90 clockwise
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);  // transverse
+            default -> new AffineTransform(0, -1, 1, 0, 0, w);  // 8: rotate 90 counter-clockwise
+        };
+        boolean swap = orientation >= 5;
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage target = new BufferedImage(swap ? source.getHeight() : source.getWidth(),
+                swap ? source.getWidth() : source.getHeight(), type);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.drawImage(source, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Scale to the given width keeping the aspect ratio; never upscales
+     */
+    public static BufferedImage scaleToWidth(BufferedImage source, Integer width, Format format) {
+        int targetWidth = width != null ? Math.min(width, source.getWidth()) : source.getWidth();
+        int targetHeight = Math.max(1, Math.round(source.getHeight() * (targetWidth / (float) source.getWidth())));
+        return resize(source, targetWidth, targetHeight, format);
+    }
+
+    /**
+     * Scale so the longest edge is at most {@code maxEdge}, keeping the aspect ratio; never upscales
+     */
+    public static BufferedImage scaleToFit(BufferedImage source, int maxEdge, Format format) {
+        int longest = Math.max(source.getWidth(), source.getHeight());
+        float factor = longest > maxEdge ? maxEdge / (float) longest : 1f;
+        int targetWidth = Math.max(1, Math.round(source.getWidth() * factor));
+        int targetHeight = Math.max(1, Math.round(source.getHeight() * factor));
+        return resize(source, targetWidth, targetHeight, format);
+    }
+
+    /**
+     * Encode without any source metadata (EXIF, ICC comments, thumbnails)
+     *
+     * @param quality 1-100, used for JPEG
+     */
+    public static void write(BufferedImage image, Path target, Format format, int quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format.imageIoName).next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (format == Format.JPEG) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality / 100f);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static BufferedImage resize(BufferedImage source, int width, int height, Format format) {
+        // JPEG has no alpha channel: flatten onto white
+        int type = format == Format.JPEG ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage target = new BufferedImage(width, height, type);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            if (format == Format.JPEG) {
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+            }
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+}
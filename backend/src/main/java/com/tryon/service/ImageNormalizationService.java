@@ -0,0 +1,281 @@
+package com.tryon.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Prepares try-on input images before they are sent to Gemini
+ *
+ * Each image is decoded, turned upright per its EXIF orientation, scaled so its longest edge
+ * fits gemini.image.max-edge, and re-encoded in one format without metadata, so the request
+ * carries a bounded payload with a correct MIME type. Catalog product images are normalized
+ * once and kept on disk keyed by path and version; user uploads are normalized into a temp file
+ * per job. Images larger than gemini.image.max-pixels are refused before decoding, and at most
+ * gemini.image.max-concurrent-decodes images are decoded at once, since every admitted job
+ * normalizes its inputs before it waits for a Gemini request slot.
+ *
+ * A scheduled sweep keeps the normalized product images within gemini.image.cache-max-bytes,
+ * least recently used first, and deletes per-job temp files a crash left behind.
+ *
+ * Formats the JDK cannot decode (e.g. AVIF, WebP) are sent unchanged, labelled with the MIME
+ * type sniffed from their content.
+ */
+@Service
+@Slf4j
+public class ImageNormalizationService {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    @Value("${gemini.image.normalize:true}")
+    private boolean enabled;
+
+    @Value("${gemini.image.max-edge:1536}")
+    private int maxEdge;
+
+    @Value("${gemini.image.format:jpeg}")
+    private String formatName;
+
+    @Value("${gemini.image.quality:90}")
+    private int quality;
+
+    @Value("${gemini.image.max-pixels:16777216}")
+    private long maxPixels;
+
+    @Value("${gemini.image.max-concurrent-decodes:4}")
+    private int maxConcurrentDecodes;
+
+    @Value("${gemini.image.cache-directory:./storage/cache/normalized}")
+    private String cacheDirectory;
+
+    @Value("${gemini.image.cache-max-bytes:268435456}")
+    private long cacheMaxBytes;
+
+    @Value("${gemini.image.temp-max-age:1h}")
+    private Duration tempMaxAge;
+
+    private ImageCodec.Format format;
+    private Semaphore decodePermits;
+
+    // Last use per normalized product image, epoch millis; files not used since startup fall back to their mtime
+    private final Map<Path, Long> lastAccess = new ConcurrentHashMap<>();
+
+    /**
+     * An image ready to upload
+     *
+     * @param temporary true if {@code path} is a per-job file to delete with {@link #release}
+     */
+    public record NormalizedImage(Path path, String mimeType, boolean temporary) {
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        format = ImageCodec.Format.parse(formatName);
+        decodePermits = new Semaphore(maxConcurrentDecodes, true);
+        Files.createDirectories(Paths.get(cacheDirectory));
+    }
+
+    /**
+     * Normalized catalog product image, reused across jobs until the source file changes
+     */
+    public NormalizedImage normalizeCached(Path source) throws IOException {
+        if (!enabled) {
+            return passThrough(source);
+        }
+
+        Path cached = Paths.get(cacheDirectory, cacheKey(source) + "." + format.extension());
+        if (Files.exists(cached)) {
+            lastAccess.put(cached, System.currentTimeMillis());
+            return new NormalizedImage(cached, format.mimeType(), false);
+        }
+
+        // Concurrent first uses may both encode; the atomic move makes the last one win harmlessly
+        Path temp = Files.createTempFile(cached.getParent(), "." + cached.getFileName(), ".tmp");
+        try {
+            if (!encode(source, temp)) {
+                return passThrough(source);
+            }
+            Files.move(temp, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lastAccess.put(cached, System.currentTimeMillis());
+            log.info("Normalized product image {} -> {} ({} -> {} bytes)",
+                    source.getFileName(), cached.getFileName(), Files.size(source), Files.size(cached));
+            return new NormalizedImage(cached, format.mimeType(), false);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Normalized copy of a one-off image (user upload or per-job product upload)
+     */
+    public NormalizedImage normalize(Path source) throws IOException {
+        if (!enabled) {
+            return passThrough(source);
+        }
+
+        Path temp = Files.createTempFile(Paths.get(cacheDirectory), ".upload-", "." + format.extension());
+        try {
+            if (!encode(source, temp)) {
+                Files.deleteIfExists(temp);
+                return passThrough(source);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        log.debug("Normalized upload {} ({} -> {} bytes)", source.getFileName(), Files.size(source), Files.size(temp));
+        return new NormalizedImage(temp, format.mimeType(), true);
+    }
+
+    /**
+     * Delete a per-job normalized file once the request has been sent
+     */
+    public void release(NormalizedImage image) {
+        if (image == null || !image.temporary()) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(image.path());
+        } catch (IOException e) {
+            log.warn("Failed to delete normalized image {}: {}", image.path(), e.getMessage());
+        }
+    }
+
+    /**
+     * @return false if the source format cannot be decoded
+     * @throws IllegalArgumentException if the source exceeds gemini.image.max-pixels
+     */
+    private boolean encode(Path source, Path target) throws IOException {
+        try {
+            decodePermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting to normalize " + source.getFileName());
+        }
+        try {
+            BufferedImage image = ImageCodec.read(source, maxPixels);
+            if (image == null) {
+                return false;
+            }
+            ImageCodec.write(ImageCodec.scaleToFit(image, maxEdge, format), target, format, quality);
+            return true;
+        } finally {
+            decodePermits.release();
+        }
+    }
+
+    /**
+     * Delete abandoned temp files and the least recently used product images beyond the byte budget
+     */
+    @Scheduled(fixedDelayString = "${gemini.image.sweep-interval-ms:300000}")
+    public void sweep() {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(Paths.get(cacheDirectory))) {
+            files = listing.toList();
+        } catch (IOException e) {
+            log.warn("Failed to sweep normalized images: {}", e.getMessage());
+            return;
+        }
+
+        long tempCutoff = System.currentTimeMillis() - tempMaxAge.toMillis();
+        List<Path> cached = files.stream()
+                .filter(path -> !path.getFileName().toString().startsWith("."))
+                .sorted(Comparator.comparingLong(this::lastUsed).reversed())
+                .toList();
+        long retained = 0;
+        int deleted = 0;
+        for (Path file : files) {
+            // Per-job uploads and interrupted encodes are dot files; live ones are minutes old at most
+            if (file.getFileName().toString().startsWith(".") && lastModified(file) < tempCutoff && delete(file)) {
+                deleted++;
+            }
+        }
+        for (Path file : cached) {
+            long size = sizeOf(file);
+            if (retained + size <= cacheMaxBytes) {
+                retained += size;
+            } else if (delete(file)) {
+                lastAccess.remove(file);
+                deleted++;
+            }
+        }
+        if (deleted > 0) {
+            log.info("Swept {} normalized images, {} bytes remain", deleted, retained);
+        }
+    }
+
+    private boolean delete(Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete normalized image {}: {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    private long lastUsed(Path file) {
+        Long accessed = lastAccess.get(file);
+        return accessed != null ? accessed : lastModified(file);
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private NormalizedImage passThrough(Path source) throws IOException {
+        String mimeType = ImageCodec.sniffMimeType(source);
+        if (mimeType == null) {
+            log.warn("Unrecognized image content in {}, sending as image/jpeg", source.getFileName());
+            mimeType = "image/jpeg";
+        }
+        return new NormalizedImage(source, mimeType, false);
+    }
+
+    private String cacheKey(Path source) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        String identity = source.toAbsolutePath().normalize()
+                + "|" + attributes.size()
+                + "|" + attributes.lastModifiedTime().toMillis()
+                + "|" + maxEdge + "|" + format + "|" + quality;
+        try {
+            return HEX.formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(identity.getBytes(StandardCharsets.UTF_8)), 0, 20);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
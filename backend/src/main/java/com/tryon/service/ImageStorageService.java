@@ -1,25 +1,41 @@
 package com.tryon.service;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.UUID;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Service for handling file storage operations with validation and security
  */
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class ImageStorageService {
 
+    private final ImageCacheService imageCacheService;
+    private final ContentAddressedStore contentAddressedStore;
+    private final GroupCommitSyncer groupCommitSyncer;
+    private final BlobStorage blobStorage;
+
     @Value("${storage.products}")
     private String productsDirectory;
 
@@ -35,108 +51,327 @@ public class ImageStorageService {
     @Value("${storage.max-file-size}")
     private long maxFileSize;
 
-    @Value("${server.port}")
-    private String serverPort;
+    @Value("${storage.sharding.enabled:true}")
+    private boolean shardingEnabled;
+
+    @Value("${storage.public-url-base:http://localhost:${server.port}}")
+    private String publicUrlBase;
+
+    @Value("${storage.backend.presign-ttl:15m}")
+    private Duration presignTtl;
 
     /**
      * Store a product image and return the file path
      */
     public String storeProductImage(MultipartFile file, String productId) throws IOException {
-        validateFile(file);
-        ensureDirectoryExists(productsDirectory);
+        try (InputStream in = file.getInputStream()) {
+            return ingestImage(in, "products", productId, file.getOriginalFilename()).path();
+        }
+    }
 
-        String filename = generateSafeFilename(productId, file.getOriginalFilename());
-        Path targetPath = Paths.get(productsDirectory, filename);
+    /**
+     * Stream an uploaded image to its final location in a single pass
+     *
+     * The leading bytes are sniffed to validate the format (the client's Content-Type and filename
+     * are not trusted), the size limit is enforced as bytes arrive, and a SHA-256 of the content
+     * is computed while writing. The file is written once, to a temp name in the target directory,
+     * and renamed into place.
+     *
+     * @param category "user" or "products"
+     * @param name file name without extension; the extension follows the sniffed format
+     */
+    public StoredUpload ingestImage(InputStream content, String category, String name, String originalFilename)
+            throws IOException {
+        String directory = switch (category) {
+            case "products" -> productsDirectory;
+            case "user" -> userUploadsDirectory;
+            default -> throw new IllegalArgumentException("Invalid upload category: " + category);
+        };
+        ensureDirectoryExists(directory);
 
-        Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
-        log.info("Stored product image: {} -> {}", file.getOriginalFilename(), targetPath);
+        byte[] header = content.readNBytes(16);
+        if (header.length == 0) {
+            throw new IllegalArgumentException("File cannot be empty");
+        }
+        String contentType = ImageCodec.sniffMimeType(header, header.length);
+        if (contentType == null || !allowedContentTypes.contains(contentType)) {
+            throw new IllegalArgumentException("File type not allowed. Supported types: " + allowedContentTypes);
+        }
 
-        return targetPath.toString();
+        MessageDigest digest = sha256();
+        Path tempPath = Files.createTempFile(Paths.get(directory), ".upload-", ".tmp");
+        long size = header.length;
+        try {
+            try (OutputStream out = Files.newOutputStream(tempPath)) {
+                digest.update(header);
+                out.write(header);
+
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = content.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxFileSize) {
+                        throw new MaxUploadSizeExceededException(maxFileSize);
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            String extension = extensionForMimeType(contentType);
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            String filename = sanitizeFilename(name) + "." + extension;
+            Path targetPath = "products".equals(category)
+                    ? Paths.get(directory, filename)
+                    : shardedPath(directory, filename);
+            publish(tempPath, sha256, extension, targetPath);
+            if ("products".equals(category)) {
+                replicate(category, targetPath, contentType);
+            }
+            log.info("Stored {} image: {} -> {} ({} bytes)", category, originalFilename, targetPath, size);
+
+            return new StoredUpload(targetPath.toString(), originalFilename, contentType, size, sha256);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
     }
 
     /**
-     * Store a user uploaded image for try-on processing
+     * Create an empty temp file in the results directory for a generated image to be streamed into
      */
-    public String storeUserImage(MultipartFile file) throws IOException {
-        validateFile(file);
-        ensureDirectoryExists(userUploadsDirectory);
-
-        String filename = generateSafeFilename(UUID.randomUUID().toString(), file.getOriginalFilename());
-        Path targetPath = Paths.get(userUploadsDirectory, filename);
+    public Path createResultTempFile(String jobId) throws IOException {
+        ensureDirectoryExists(resultsDirectory);
+        return Files.createTempFile(Paths.get(resultsDirectory), "." + sanitizeFilename(jobId) + "-", ".tmp");
+    }
 
-        Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
-        log.info("Stored user image: {} -> {}", file.getOriginalFilename(), targetPath);
+    /**
+     * Publish a generated result image written to a temp file by atomically renaming it into place
+     *
+     * With group commit enabled this returns only once the image is on disk, so a job is never
+     * reported SUCCEEDED with a result a crash could lose.
+     */
+    public String storeResultImage(Path tempFile, String jobId, String extension) throws IOException {
+        Path targetPath = shardedPath(resultsDirectory, sanitizeFilename(jobId) + "." + extension);
+        publish(tempFile, contentAddressedStore.isEnabled() ? sha256Of(tempFile) : null, extension, targetPath);
+        makeDurable(targetPath);
+        replicate("results", targetPath, mimeTypeForExtension(extension));
+        log.info("Stored result image: {}", targetPath);
 
         return targetPath.toString();
     }
 
     /**
-     * Store a generated result image from try-on processing
+     * Publish an existing result (cached or from a coalesced job) as a job's result image,
+     * hard-linking instead of copying when possible
      */
-    public String storeResultImage(byte[] imageData, String jobId, String extension) throws IOException {
+    public String linkResultImage(Path sourceFile, String jobId) throws IOException {
         ensureDirectoryExists(resultsDirectory);
 
-        String filename = sanitizeFilename(jobId) + "." + extension;
-        Path targetPath = Paths.get(resultsDirectory, filename);
-
-        Files.write(targetPath, imageData);
-        log.info("Stored result image: {}", targetPath);
+        String sourceName = sourceFile.getFileName().toString();
+        String extension = sourceName.substring(sourceName.lastIndexOf('.') + 1);
+        Path targetPath = shardedPath(resultsDirectory, sanitizeFilename(jobId) + "." + extension);
+
+        // Another job's result is already a blob; a file from the result cache is hashed and
+        // deduplicated against the blobs like any new content
+        if (!contentAddressedStore.link(sourceFile, targetPath)) {
+            Path tempFile = createResultTempFile(jobId);
+            try {
+                Files.deleteIfExists(tempFile);
+                try {
+                    Files.createLink(tempFile, sourceFile);
+                } catch (IOException | UnsupportedOperationException e) {
+                    Files.copy(sourceFile, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+                publish(tempFile, contentAddressedStore.isEnabled() ? sha256Of(tempFile) : null, extension, targetPath);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+        imageCacheService.invalidate(targetPath);
+        makeDurable(targetPath);
+        replicate("results", targetPath, mimeTypeForExtension(extension));
+        log.info("Linked result image: {} -> {}", sourceFile, targetPath);
 
         return targetPath.toString();
     }
 
+    /**
+     * File extension for an image MIME type reported by the generation model
+     */
+    public String extensionForMimeType(String mimeType) {
+        if (mimeType == null) {
+            return "jpg";
+        }
+        return switch (mimeType.toLowerCase()) {
+            case "image/png" -> "png";
+            case "image/webp" -> "webp";
+            default -> "jpg";
+        };
+    }
+
     /**
      * Generate public URL for accessing stored images
      */
     public String generatePublicUrl(String filePath, String category) {
         Path path = Paths.get(filePath);
         String filename = path.getFileName().toString();
-        return String.format("http://localhost:%s/api/images/%s/%s", serverPort, category, filename);
+        return String.format("%s/api/images/%s/%s", publicUrlBase.replaceAll("/+$", ""), category, filename);
     }
 
     /**
-     * Get the actual file path for serving images
+     * Direct URL for a product or result image in the storage backend, letting clients skip this service
+     *
+     * @return empty for user uploads (never leave the node) or when the backend is local
+     */
+    public Optional<URI> presignedImageUrl(String category, String filename) {
+        if (!blobStorage.isRemote() || "user".equals(category)) {
+            return Optional.empty();
+        }
+        return blobStorage.presignedUrl(category + "/" + filename, presignTtl);
+    }
+
+    /**
+     * Download a product or result image published by another node into local storage
+     *
+     * @return the local file, or empty if the backend does not have it either
+     */
+    public Optional<Path> fetchImage(String category, String filename) throws IOException {
+        if (!blobStorage.isRemote() || "user".equals(category)) {
+            return Optional.empty();
+        }
+        Path target = "products".equals(category)
+                ? getImagePath(category, filename)
+                : shardedPath(resultsDirectory, filename);
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        if (!blobStorage.fetch(category + "/" + filename, target)) {
+            return Optional.empty();
+        }
+        imageCacheService.invalidate(target);
+        log.info("Fetched {}/{} from the storage backend", category, filename);
+        return Optional.of(target);
+    }
+
+    /**
+     * Get the file path an image is stored under (its alias when content-addressed storage is on)
      */
     public Path getImagePath(String category, String filename) {
         return switch (category) {
             case "products" -> Paths.get(productsDirectory, filename);
-            case "user" -> Paths.get(userUploadsDirectory, filename);
-            case "results" -> Paths.get(resultsDirectory, filename);
+            case "user" -> locate(userUploadsDirectory, filename);
+            case "results" -> locate(resultsDirectory, filename);
             default -> throw new IllegalArgumentException("Invalid image category: " + category);
         };
     }
 
     /**
-     * Validate uploaded file for security and constraints
+     * Current location of a stored file recorded by path, e.g. in a persisted job
+     *
+     * Paths recorded before storage.user-uploads and storage.results were sharded point at the
+     * flat location; once the file has been migrated this returns its shard path instead.
      */
-    private void validateFile(MultipartFile file) {
-        if (file.isEmpty()) {
-            throw new IllegalArgumentException("File cannot be empty");
+    public Path locateImage(String filePath) {
+        Path recorded = Paths.get(filePath);
+        Path directory = recorded.toAbsolutePath().normalize().getParent();
+        String filename = recorded.getFileName().toString();
+        if (directory.equals(Paths.get(userUploadsDirectory).toAbsolutePath().normalize())) {
+            return locate(userUploadsDirectory, filename);
         }
-
-        if (file.getSize() > maxFileSize) {
-            throw new IllegalArgumentException("File size exceeds maximum allowed size of " + maxFileSize + " bytes");
+        if (directory.equals(Paths.get(resultsDirectory).toAbsolutePath().normalize())) {
+            return locate(resultsDirectory, filename);
         }
+        return recorded;
+    }
 
-        String contentType = file.getContentType();
-        if (contentType == null || !allowedContentTypes.contains(contentType)) {
-            throw new IllegalArgumentException("File type not allowed. Supported types: " + allowedContentTypes);
+    /**
+     * Move files written before sharding was enabled into their shard directories
+     *
+     * Safe to run while serving: lookups fall back to the flat location until a file has moved.
+     *
+     * @return number of files moved
+     */
+    public int migrateToShardedLayout() throws IOException {
+        int moved = 0;
+        for (String directory : List.of(userUploadsDirectory, resultsDirectory)) {
+            Path root = Paths.get(directory);
+            if (!Files.isDirectory(root)) {
+                continue;
+            }
+            List<Path> flatFiles;
+            try (Stream<Path> listing = Files.list(root)) {
+                flatFiles = listing
+                        .filter(Files::isRegularFile)
+                        .filter(path -> !path.getFileName().toString().startsWith("."))
+                        .toList();
+            }
+            for (Path flat : flatFiles) {
+                Path target = shardedPath(directory, flat.getFileName().toString());
+                if (Files.exists(target)) {
+                    log.warn("Not migrating {}: {} already exists", flat, target);
+                    continue;
+                }
+                if (!contentAddressedStore.rename(flat, target)) {
+                    Files.createDirectories(target.getParent());
+                    Files.move(flat, target, StandardCopyOption.ATOMIC_MOVE);
+                }
+                imageCacheService.invalidate(flat);
+                moved++;
+            }
+            log.info("Migrated {} to the sharded layout", directory);
         }
+        return moved;
+    }
+
+    /**
+     * File to serve for an image: the shared blob, so every alias of the same content is
+     * cached and served as one file
+     */
+    public Path resolveImagePath(String category, String filename) {
+        Path alias = getImagePath(category, filename);
+        return contentAddressedStore.resolve(alias).orElse(alias);
+    }
 
-        // Additional validation using file extension
-        String originalFilename = file.getOriginalFilename();
-        if (originalFilename == null || !hasValidImageExtension(originalFilename)) {
-            throw new IllegalArgumentException("Invalid file extension. Only .jpg, .jpeg, .png files are allowed");
+    /**
+     * Delete a stored file (upload or result), returning true if it existed
+     *
+     * Content-addressed files only drop their alias; the content goes once no alias refers to it.
+     */
+    public boolean deleteImage(String filePath) {
+        try {
+            Path path = locateImage(filePath);
+            Optional<Path> blob = contentAddressedStore.resolve(path);
+            boolean deleted = contentAddressedStore.release(path) || Files.deleteIfExists(path);
+            imageCacheService.invalidate(path);
+            blob.ifPresent(imageCacheService::invalidate);
+            if (deleted) {
+                log.debug("Deleted stored image: {}", filePath);
+            }
+            deleteReplica(path);
+            return deleted;
+        } catch (IOException e) {
+            log.warn("Failed to delete stored image {}: {}", filePath, e.getMessage());
+            return false;
         }
     }
 
     /**
-     * Generate a safe filename with UUID prefix to avoid conflicts
+     * Remove the backend copy of a product or result image; a failure only leaves an orphaned object
      */
-    private String generateSafeFilename(String prefix, String originalFilename) {
-        String extension = getFileExtension(originalFilename);
-        String safePrefix = sanitizeFilename(prefix);
-        return safePrefix + "." + extension;
+    private void deleteReplica(Path path) {
+        if (!blobStorage.isRemote()) {
+            return;
+        }
+        Path absolute = path.toAbsolutePath().normalize();
+        String category = absolute.startsWith(Paths.get(resultsDirectory).toAbsolutePath().normalize()) ? "results"
+                : absolute.startsWith(Paths.get(productsDirectory).toAbsolutePath().normalize()) ? "products"
+                : null;
+        if (category == null) {
+            return;
+        }
+        try {
+            blobStorage.delete(category + "/" + path.getFileName());
+        } catch (IOException e) {
+            log.warn("Failed to delete {}/{} from the storage backend: {}", category, path.getFileName(), e.getMessage());
+        }
     }
 
     /**
@@ -153,21 +388,91 @@ public class ImageStorageService {
     }
 
     /**
-     * Extract file extension from filename
+     * Move a fully written temp file into place as {@code target}, through the content-addressed
+     * store when it is enabled
+     *
+     * @param sha256 content hash, only needed when the store is enabled
+     */
+    private void publish(Path tempFile, String sha256, String extension, Path target) throws IOException {
+        if (contentAddressedStore.isEnabled()) {
+            contentAddressedStore.put(tempFile, sha256, extension, target);
+        } else {
+            Files.createDirectories(target.getParent());
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        imageCacheService.invalidate(target);
+    }
+
+    /**
+     * Flush a published file, its blob and their directory entries (no-op unless group commit is enabled)
      */
-    private String getFileExtension(String filename) {
-        if (filename == null || !filename.contains(".")) {
-            return "jpg"; // default extension
+    private void makeDurable(Path target) throws IOException {
+        if (!groupCommitSyncer.isEnabled()) {
+            return;
         }
-        return filename.substring(filename.lastIndexOf(".") + 1).toLowerCase();
+        Optional<Path> blob = contentAddressedStore.resolve(target);
+        groupCommitSyncer.sync(blob.isPresent() ? List.of(target, blob.get()) : List.of(target));
     }
 
     /**
-     * Check if filename has valid image extension
+     * Where a new file goes in a sharded directory: two levels of 256 subdirectories chosen by
+     * the name's hash, so no directory grows past a few thousand entries
      */
-    private boolean hasValidImageExtension(String filename) {
-        String extension = getFileExtension(filename);
-        return List.of("jpg", "jpeg", "png").contains(extension);
+    private Path shardedPath(String directory, String filename) {
+        if (!shardingEnabled) {
+            return Paths.get(directory, filename);
+        }
+        int shard = Math.floorMod(filename.hashCode(), 1 << 16);
+        return Paths.get(directory, String.format("%02x", shard >> 8), String.format("%02x", shard & 0xFF), filename);
+    }
+
+    /**
+     * Existing file in a sharded directory; falls back to the flat location for files not yet migrated
+     */
+    private Path locate(String directory, String filename) {
+        Path sharded = shardedPath(directory, filename);
+        if (!shardingEnabled || contentAddressedStore.resolve(sharded).isPresent() || Files.exists(sharded)) {
+            return sharded;
+        }
+        Path flat = Paths.get(directory, filename);
+        return Files.exists(flat) ? flat : sharded;
+    }
+
+    /**
+     * Upload a published product or result image to the storage backend so other nodes can serve it
+     */
+    private void replicate(String category, Path file, String contentType) throws IOException {
+        if (blobStorage.isRemote()) {
+            blobStorage.store(category + "/" + file.getFileName(), file, contentType);
+        }
+    }
+
+    private String mimeTypeForExtension(String extension) {
+        return switch (extension.toLowerCase()) {
+            case "png" -> "image/png";
+            case "webp" -> "image/webp";
+            default -> "image/jpeg";
+        };
+    }
+
+    private static String sha256Of(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 
     /**
@@ -0,0 +1,301 @@
+package com.tryon.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Resized / re-encoded variants of stored images, cached on disk
+ *
+ * A variant is identified by the original file's path and version (size + modification time)
+ * plus the requested width, quality (JPEG only; PNG is lossless) and format, so replacing an
+ * original yields new variants.
+ * Widths are rounded up to a configured set of breakpoints to keep the number of variants per
+ * image small. Concurrent requests for the same missing variant share a single encode.
+ *
+ * The original's version comes from {@link ImageCacheService}, and variants known to exist are
+ * remembered, so serving an existing variant costs no filesystem calls beyond the cache's own.
+ * Each use is recorded in memory, and the sweep deletes the least recently used variants first.
+ * At most storage.variants.max-concurrent-encodes variants are decoded and encoded at once, so
+ * requests for many distinct parameter combinations queue instead of exhausting CPU and heap.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImageVariantService {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final ImageCacheService imageCacheService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${storage.variants.directory:./storage/cache/variants}")
+    private String variantsDirectory;
+
+    @Value("${storage.variants.widths:160,320,480,640,960,1280,1920}")
+    private List<Integer> widths;
+
+    @Value("${storage.variants.default-quality:80}")
+    private int defaultQuality;
+
+    @Value("${storage.variants.max-disk-bytes:536870912}")
+    private long maxDiskBytes;
+
+    @Value("${storage.variants.max-pixels:16777216}")
+    private long maxPixels;
+
+    @Value("${storage.variants.max-concurrent-encodes:2}")
+    private int maxConcurrentEncodes;
+
+    private Semaphore encodePermits;
+
+    @Value("${storage.variants.max-known-entries:10000}")
+    private int maxKnownEntries;
+
+    private final Map<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    // Variants confirmed on disk, keyed like the files themselves
+    private final Map<String, Path> known = new ConcurrentHashMap<>();
+
+    // Last use per variant file, epoch millis; files not used since startup fall back to their mtime
+    private final Map<Path, Long> lastAccess = new ConcurrentHashMap<>();
+
+    private Counter generatedCounter;
+    private Counter sharedCounter;
+
+    /**
+     * Requested variant; null fields keep the original's value
+     */
+    public record VariantSpec(Integer width, Integer quality, ImageCodec.Format format) {
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        generatedCounter = meterRegistry.counter("tryon.image-variants.generated");
+        sharedCounter = meterRegistry.counter("tryon.image-variants.shared");
+        widths = widths.stream().sorted().toList();
+        encodePermits = new Semaphore(maxConcurrentEncodes, true);
+        Files.createDirectories(Paths.get(variantsDirectory));
+    }
+
+    /**
+     * Validate request parameters into a variant spec
+     *
+     * @throws IllegalArgumentException for out-of-range width/quality or unknown format
+     */
+    public VariantSpec spec(Integer width, Integer quality, String format) {
+        if (width != null && (width < 1 || width > widths.get(widths.size() - 1))) {
+            throw new IllegalArgumentException("Width must be between 1 and " + widths.get(widths.size() - 1));
+        }
+        if (quality != null && (quality < 1 || quality > 100)) {
+            throw new IllegalArgumentException("Quality must be between 1 and 100");
+        }
+        Integer breakpoint = width == null ? null
+                : widths.stream().filter(w -> w >= width).findFirst().orElse(widths.get(widths.size() - 1));
+        return new VariantSpec(breakpoint, quality, format != null ? ImageCodec.Format.parse(format) : null);
+    }
+
+    /**
+     * Path of the variant file, generating it if it is not on disk yet
+     */
+    public Path getVariant(ImageCacheService.CachedImage original, VariantSpec spec) throws IOException {
+        ImageCodec.Format format = spec.format() != null ? spec.format() : formatOf(original.path());
+        int quality = spec.quality() != null ? spec.quality() : defaultQuality;
+
+        String key = variantKey(original, spec.width(), quality, format);
+        Path variant = known.get(key);
+        if (variant != null) {
+            touch(variant);
+            return variant;
+        }
+        variant = Paths.get(variantsDirectory, key + "." + format.extension());
+        if (Files.exists(variant)) {
+            remember(key, variant);
+            touch(variant);
+            return variant;
+        }
+
+        // One encode per variant: later callers wait on the first
+        CompletableFuture<Path> created = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            sharedCounter.increment();
+            return await(existing);
+        }
+        try {
+            generate(original.path(), variant, spec.width(), quality, format);
+            remember(key, variant);
+            touch(variant);
+            created.complete(variant);
+            return variant;
+        } catch (IOException | RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key);
+        }
+    }
+
+    /**
+     * Delete the least recently used variants once the cache exceeds its byte budget
+     */
+    @Scheduled(fixedDelayString = "${storage.variants.sweep-interval-ms:300000}")
+    public void sweep() {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(Paths.get(variantsDirectory))) {
+            files = listing
+                    .filter(path -> !path.getFileName().toString().startsWith("."))
+                    .sorted(Comparator.comparingLong(this::lastUsed).reversed())
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Failed to sweep image variants: {}", e.getMessage());
+            return;
+        }
+
+        long retained = 0;
+        int evicted = 0;
+        for (Path file : files) {
+            long size = sizeOf(file);
+            if (retained + size <= maxDiskBytes) {
+                retained += size;
+                continue;
+            }
+            try {
+                if (Files.deleteIfExists(file)) {
+                    known.values().remove(file);
+                    lastAccess.remove(file);
+                    imageCacheService.invalidate(file);
+                    evicted++;
+                }
+            } catch (IOException e) {
+                log.warn("Failed to evict image variant {}: {}", file, e.getMessage());
+            }
+        }
+        if (evicted > 0) {
+            log.info("Evicted {} image variants, {} bytes remain", evicted, retained);
+        }
+    }
+
+    private void generate(Path original, Path variant, Integer width, int quality, ImageCodec.Format format) throws IOException {
+        try {
+            encodePermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting to resize " + original.getFileName());
+        }
+        try {
+            BufferedImage source = ImageCodec.read(original, maxPixels);
+            if (source == null) {
+                throw new IllegalArgumentException("Image format cannot be resized: " + original.getFileName());
+            }
+
+            BufferedImage scaled = ImageCodec.scaleToWidth(source, width, format);
+            Path temp = Files.createTempFile(variant.getParent(), "." + variant.getFileName(), ".tmp");
+            try {
+                ImageCodec.write(scaled, temp, format, quality);
+                Files.move(temp, variant, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } finally {
+            encodePermits.release();
+        }
+        generatedCounter.increment();
+        log.debug("Generated image variant {} ({}px, q{}, {})", variant.getFileName(), width, quality, format);
+    }
+
+    private ImageCodec.Format formatOf(Path original) {
+        String name = original.getFileName().toString().toLowerCase();
+        return name.endsWith(".png") ? ImageCodec.Format.PNG : ImageCodec.Format.JPEG;
+    }
+
+    private void remember(String key, Path variant) {
+        if (known.size() >= maxKnownEntries) {
+            known.clear();
+        }
+        known.put(key, variant);
+    }
+
+    private String variantKey(ImageCacheService.CachedImage original, Integer width, int quality, ImageCodec.Format format) {
+        String identity = original.path().toAbsolutePath().normalize()
+                + "|" + original.length()
+                + "|" + original.lastModified()
+                + "|" + (width != null ? width : "orig")
+                // PNG ignores quality: every ?q= maps to the same file
+                + "|" + (format == ImageCodec.Format.PNG ? "lossless" : quality)
+                + "|" + format;
+        return HEX.formatHex(sha256().digest(identity.getBytes(StandardCharsets.UTF_8)), 0, 20);
+    }
+
+    private Path await(CompletableFuture<Path> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new UncheckedIOException(new IOException(e.getCause()));
+        }
+    }
+
+    private long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void touch(Path variant) {
+        lastAccess.put(variant, System.currentTimeMillis());
+    }
+
+    private long lastUsed(Path file) {
+        Long accessed = lastAccess.get(file);
+        if (accessed != null) {
+            return accessed;
+        }
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
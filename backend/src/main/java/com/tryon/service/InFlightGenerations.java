@@ -0,0 +1,81 @@
+package com.tryon.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single-flight registry of in-progress try-on generations
+ *
+ * The first job for a given input key becomes the leader and runs the generation; identical
+ * submissions arriving while it is in flight attach to the leader's future instead of
+ * starting their own Gemini call. The future completes with the leader's result file path.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class InFlightGenerations {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${tryon.coalescing.enabled:true}")
+    private boolean enabled;
+
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private Counter coalescedCounter;
+
+    @PostConstruct
+    void registerMetrics() {
+        coalescedCounter = meterRegistry.counter("tryon.jobs.coalesced");
+        Gauge.builder("tryon.jobs.in-flight-generations", inFlight, Map::size)
+                .description("Distinct try-on generations currently in flight")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Register interest in a generation
+     *
+     * @return null if the caller is now the leader and must run the generation, otherwise
+     *         the in-flight leader's result future to attach to
+     */
+    public CompletableFuture<String> join(String key) {
+        if (!enabled) {
+            return null;
+        }
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, new CompletableFuture<>());
+        if (existing != null) {
+            coalescedCounter.increment();
+            log.debug("Coalescing with in-flight generation {}", key);
+        }
+        return existing;
+    }
+
+    /**
+     * Leader finished successfully - release followers with the result file
+     */
+    public void complete(String key, String resultImagePath) {
+        CompletableFuture<String> future = inFlight.remove(key);
+        if (future != null) {
+            future.complete(resultImagePath);
+        }
+    }
+
+    /**
+     * Leader failed or was never started - fail its followers
+     */
+    public void fail(String key, Throwable cause) {
+        CompletableFuture<String> future = inFlight.remove(key);
+        if (future != null) {
+            future.completeExceptionally(cause);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.tryon.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Non-persistent job store - jobs are lost on restart (tryon.jobs.store.type=memory)
+ */
+@Component
+@ConditionalOnProperty(name = "tryon.jobs.store.type", havingValue = "memory")
+public class InMemoryJobStore implements JobStore {
+
+    private final Map<String, TryOnJobEntry> jobs = new ConcurrentHashMap<>();
+
+    @Override
+    public void save(TryOnJobEntry entry) {
+        jobs.put(entry.getJob().getJobId(), entry);
+    }
+
+    @Override
+    public Optional<TryOnJobEntry> findById(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    @Override
+    public Collection<TryOnJobEntry> findAll() {
+        return List.copyOf(jobs.values());
+    }
+
+    @Override
+    public boolean remove(String jobId) {
+        return jobs.remove(jobId) != null;
+    }
+
+    @Override
+    public int size() {
+        return jobs.size();
+    }
+}
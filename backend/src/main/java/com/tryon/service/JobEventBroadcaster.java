@@ -0,0 +1,261 @@
+package com.tryon.service;
+
+import com.tryon.dto.TryOnJobResponse;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pushes try-on job state transitions to waiting clients
+ *
+ * Clients either hold a Server-Sent Events stream for one or more jobs, or a long-poll request
+ * that completes on the next transition. Both are servlet async requests: an idle subscriber
+ * holds a socket and a small registry entry, not a thread. TryOnService publishes every status
+ * change; a stream completes once all of its jobs are SUCCEEDED or FAILED.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class JobEventBroadcaster {
+
+    private final JobStore jobStore;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${tryon.events.stream-timeout:10m}")
+    private Duration streamTimeout;
+
+    @Value("${tryon.events.long-poll-timeout:30s}")
+    private Duration longPollTimeout;
+
+    @Value("${tryon.events.max-jobs-per-stream:50}")
+    private int maxJobsPerStream;
+
+    // jobId -> subscribers waiting on that job
+    private final Map<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final Set<StreamSubscription> streams = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("tryon.events.streams", streams, Set::size)
+                .description("Open job event streams")
+                .register(meterRegistry);
+        Gauge.builder("tryon.events.watched-jobs", subscriptions, Map::size)
+                .description("Jobs with at least one event subscriber")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Open an event stream for the given jobs, starting with each job's current state
+     *
+     * @throws IllegalArgumentException if none of the jobs exist
+     */
+    public SseEmitter openStream(Collection<String> jobIds) {
+        Set<String> known = new LinkedHashSet<>();
+        for (String jobId : jobIds) {
+            if (jobStore.findById(jobId).isPresent()) {
+                known.add(jobId);
+            }
+        }
+        if (known.isEmpty()) {
+            throw new IllegalArgumentException("Job not found: " + String.join(",", jobIds));
+        }
+
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        StreamSubscription stream = new StreamSubscription(emitter, known);
+        emitter.onCompletion(() -> unregister(stream));
+        emitter.onTimeout(() -> unregister(stream));
+        emitter.onError(error -> unregister(stream));
+
+        // Register before reading current state so no transition can fall between the two
+        streams.add(stream);
+        register(stream);
+        for (String jobId : known) {
+            jobStore.findById(jobId).ifPresent(entry -> deliver(stream, entry.getJob()));
+        }
+        return emitter;
+    }
+
+    public int getMaxJobsPerStream() {
+        return maxJobsPerStream;
+    }
+
+    /**
+     * Long-poll fallback: complete with the job once its status differs from {@code since}
+     *
+     * Completes immediately if it already differs; on timeout the current state is returned
+     * and the client polls again.
+     */
+    public DeferredResult<TryOnJobResponse> awaitChange(String jobId, TryOnJobResponse.JobStatus since) {
+        TryOnJobResponse current = jobStore.findById(jobId)
+                .map(TryOnJobEntry::getJob)
+                .orElseThrow(() -> new IllegalArgumentException("Job not found: " + jobId));
+
+        DeferredResult<TryOnJobResponse> result = new DeferredResult<>(longPollTimeout.toMillis());
+        if (since == null || current.getStatus() != since || isTerminal(current)) {
+            result.setResult(current);
+            return result;
+        }
+
+        PollSubscription poll = new PollSubscription(jobId, since, result);
+        result.onTimeout(() -> {
+            unregister(poll);
+            result.setResult(jobStore.findById(jobId).map(TryOnJobEntry::getJob).orElse(current));
+        });
+        result.onCompletion(() -> unregister(poll));
+        register(poll);
+
+        // Re-check after registering in case the transition happened in between
+        jobStore.findById(jobId).ifPresent(entry -> deliver(poll, entry.getJob()));
+        return result;
+    }
+
+    /**
+     * Deliver a job's new state to everyone watching it
+     */
+    public void publish(TryOnJobResponse job) {
+        Set<Subscription> watchers = subscriptions.get(job.getJobId());
+        if (watchers == null) {
+            return;
+        }
+        for (Subscription subscription : watchers) {
+            deliver(subscription, job);
+        }
+    }
+
+    /**
+     * Keep idle streams alive through proxies and detect clients that went away
+     */
+    @Scheduled(fixedDelayString = "${tryon.events.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        for (StreamSubscription stream : streams) {
+            try {
+                stream.emitter.send(SseEmitter.event().comment("keep-alive"));
+            } catch (IOException | IllegalStateException e) {
+                unregister(stream);
+            }
+        }
+    }
+
+    private void deliver(Subscription subscription, TryOnJobResponse job) {
+        if (subscription.accept(job)) {
+            unregister(subscription);
+        }
+    }
+
+    private void register(Subscription subscription) {
+        for (String jobId : subscription.jobIds()) {
+            subscriptions.computeIfAbsent(jobId, id -> ConcurrentHashMap.newKeySet()).add(subscription);
+        }
+    }
+
+    private void unregister(Subscription subscription) {
+        if (subscription instanceof StreamSubscription stream) {
+            streams.remove(stream);
+        }
+        for (String jobId : subscription.jobIds()) {
+            subscriptions.computeIfPresent(jobId, (id, watchers) -> {
+                watchers.remove(subscription);
+                return watchers.isEmpty() ? null : watchers;
+            });
+        }
+    }
+
+    private static boolean isTerminal(TryOnJobResponse job) {
+        return job.getStatus() == TryOnJobResponse.JobStatus.SUCCEEDED ||
+               job.getStatus() == TryOnJobResponse.JobStatus.FAILED;
+    }
+
+    @PreDestroy
+    void closeStreams() {
+        streams.forEach(stream -> stream.emitter.complete());
+        streams.clear();
+        subscriptions.clear();
+    }
+
+    /**
+     * A client waiting on one or more jobs
+     */
+    private interface Subscription {
+
+        Collection<String> jobIds();
+
+        /**
+         * Hand a job state to the subscriber
+         *
+         * @return true once the subscription is finished and can be dropped
+         */
+        boolean accept(TryOnJobResponse job);
+    }
+
+    private static final class StreamSubscription implements Subscription {
+
+        private final SseEmitter emitter;
+        private final List<String> jobIds;
+        private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+        StreamSubscription(SseEmitter emitter, Set<String> jobIds) {
+            this.emitter = emitter;
+            this.jobIds = List.copyOf(jobIds);
+            this.pending.addAll(jobIds);
+        }
+
+        @Override
+        public Collection<String> jobIds() {
+            return jobIds;
+        }
+
+        @Override
+        public boolean accept(TryOnJobResponse job) {
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(job.getJobId() + ":" + job.getStatus())
+                        .name("status")
+                        .data(job, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Job event stream closed: {}", e.getMessage());
+                return true;
+            }
+            if (isTerminal(job) && pending.remove(job.getJobId()) && pending.isEmpty()) {
+                emitter.complete();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private record PollSubscription(String jobId, TryOnJobResponse.JobStatus since,
+                                    DeferredResult<TryOnJobResponse> result) implements Subscription {
+
+        @Override
+        public Collection<String> jobIds() {
+            return List.of(jobId);
+        }
+
+        @Override
+        public boolean accept(TryOnJobResponse job) {
+            if (job.getStatus() == since) {
+                return false;
+            }
+            result.setResult(job);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.tryon.service;
+
+import com.tryon.dto.TryOnJobResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Evicts finished try-on jobs so the job store stays bounded
+ *
+ * Only terminal jobs (SUCCEEDED/FAILED) are eligible. A job is evicted when it completed longer
+ * ago than the retention window, or when terminal jobs exceed the configured maximum (oldest
+ * first). Evicting a job also deletes its user upload, per-job product upload and result image.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class JobEvictionService {
+
+    private final JobStore jobStore;
+    private final ImageStorageService imageStorageService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${tryon.jobs.eviction.retention:24h}")
+    private Duration retention;
+
+    @Value("${tryon.jobs.eviction.max-completed-jobs:10000}")
+    private int maxCompletedJobs;
+
+    @Value("${tryon.jobs.eviction.delete-files:true}")
+    private boolean deleteFiles;
+
+    private Counter expiredCounter;
+    private Counter overflowCounter;
+    private Counter filesDeletedCounter;
+
+    @PostConstruct
+    void registerMetrics() {
+        expiredCounter = meterRegistry.counter("tryon.jobs.evicted", "reason", "ttl");
+        overflowCounter = meterRegistry.counter("tryon.jobs.evicted", "reason", "capacity");
+        filesDeletedCounter = meterRegistry.counter("tryon.jobs.evicted.files");
+        Gauge.builder("tryon.jobs.stored", jobStore, JobStore::size)
+                .description("Try-on jobs held in the job store")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Periodic sweep of expired and surplus terminal jobs
+     */
+    @Scheduled(fixedDelayString = "${tryon.jobs.eviction.sweep-interval-ms:60000}")
+    public void sweep() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+
+        List<TryOnJobEntry> completed = jobStore.findAll().stream()
+                .filter(entry -> isTerminal(entry.getJob()))
+                .sorted(Comparator.comparing(this::completedAt))
+                .toList();
+
+        int expired = 0;
+        int overflow = 0;
+        int remaining = completed.size();
+
+        for (TryOnJobEntry entry : completed) {
+            if (completedAt(entry).isBefore(cutoff)) {
+                evict(entry);
+                expired++;
+            } else if (remaining > maxCompletedJobs) {
+                evict(entry);
+                overflow++;
+            } else {
+                // Sorted oldest first: nothing after this entry is expired or surplus
+                break;
+            }
+            remaining--;
+        }
+
+        expiredCounter.increment(expired);
+        overflowCounter.increment(overflow);
+        if (expired > 0 || overflow > 0) {
+            log.info("Evicted {} completed jobs ({} expired, {} over capacity), {} jobs remain",
+                    expired + overflow, expired, overflow, jobStore.size());
+        }
+    }
+
+    private void evict(TryOnJobEntry entry) {
+        TryOnJobResponse job = entry.getJob();
+        if (!jobStore.remove(job.getJobId()) || !deleteFiles) {
+            return;
+        }
+
+        int deleted = 0;
+        if (entry.getUserImagePath() != null && imageStorageService.deleteImage(entry.getUserImagePath())) {
+            deleted++;
+        }
+        if (entry.getProductImagePath() != null && imageStorageService.deleteImage(entry.getProductImagePath())) {
+            deleted++;
+        }
+        if (job.getResultImageUrl() != null) {
+            String filename = job.getResultImageUrl().substring(job.getResultImageUrl().lastIndexOf('/') + 1);
+            if (imageStorageService.deleteImage(imageStorageService.getImagePath("results", filename).toString())) {
+                deleted++;
+            }
+        }
+        filesDeletedCounter.increment(deleted);
+        log.debug("Evicted job {} and {} files", job.getJobId(), deleted);
+    }
+
+    private boolean isTerminal(TryOnJobResponse job) {
+        return job.getStatus() == TryOnJobResponse.JobStatus.SUCCEEDED
+                || job.getStatus() == TryOnJobResponse.JobStatus.FAILED;
+    }
+
+    private LocalDateTime completedAt(TryOnJobEntry entry) {
+        TryOnJobResponse job = entry.getJob();
+        return job.getCompletedAt() != null ? job.getCompletedAt() : job.getCreatedAt();
+    }
+}
@@ -0,0 +1,29 @@
+package com.tryon.service;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Storage abstraction for try-on jobs
+ *
+ * Implementations must serve reads from memory; persistence, if any, happens on writes.
+ * Selected with tryon.jobs.store.type (memory | log).
+ */
+public interface JobStore {
+
+    /**
+     * Insert or replace a job entry
+     */
+    void save(TryOnJobEntry entry);
+
+    Optional<TryOnJobEntry> findById(String jobId);
+
+    Collection<TryOnJobEntry> findAll();
+
+    /**
+     * Remove a job entry, returning true if it existed
+     */
+    boolean remove(String jobId);
+
+    int size();
+}
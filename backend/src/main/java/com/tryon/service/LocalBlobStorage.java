@@ -0,0 +1,43 @@
+package com.tryon.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Default backend: published images live only in this node's image directories (storage.backend.type=local)
+ *
+ * Every operation is a no-op because ImageStorageService has already written the file locally.
+ * Suitable for a single node; use {@link S3BlobStorage} to share images across nodes.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend.type", havingValue = "local", matchIfMissing = true)
+public class LocalBlobStorage implements BlobStorage {
+
+    @Override
+    public void store(String key, Path source, String contentType) {
+    }
+
+    @Override
+    public boolean fetch(String key, Path target) {
+        return false;
+    }
+
+    @Override
+    public void delete(String key) {
+    }
+
+    @Override
+    public Optional<URI> presignedUrl(String key, Duration ttl) {
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean isRemote() {
+        return false;
+    }
+}
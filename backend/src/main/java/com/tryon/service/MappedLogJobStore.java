@@ -0,0 +1,189 @@
+package com.tryon.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Crash-safe job store backed by an append-only memory-mapped log (tryon.jobs.store.type=log)
+ *
+ * Every save appends the full entry as JSON; removals append a tombstone. The log is replayed
+ * into an in-memory index on startup, so reads never touch disk. A scheduled compaction rewrites
+ * the log with only the live entries once superseded records dominate it. Writes append the
+ * record and then update the index under one lock, so the log always replays to the index.
+ */
+@Component
+@ConditionalOnProperty(name = "tryon.jobs.store.type", havingValue = "log", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class MappedLogJobStore implements JobStore {
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${tryon.jobs.store.path:./storage/jobs/jobs.log}")
+    private String logPath;
+
+    @Value("${tryon.jobs.store.initial-size-mb:16}")
+    private int initialSizeMb;
+
+    @Value("${tryon.jobs.store.sync-on-write:true}")
+    private boolean syncOnWrite;
+
+    @Value("${tryon.jobs.store.compaction.min-records:10000}")
+    private long compactionMinRecords;
+
+    @Value("${tryon.jobs.store.compaction.garbage-ratio:2.0}")
+    private double compactionGarbageRatio;
+
+    private final Map<String, TryOnJobEntry> index = new ConcurrentHashMap<>();
+    private MappedRecordLog recordLog;
+
+    // Orders log appends with index updates; ReentrantLock rather than synchronized so virtual threads are not pinned
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    @PostConstruct
+    void open() throws IOException {
+        recordLog = new MappedRecordLog(Paths.get(logPath), initialSizeMb * 1024 * 1024, syncOnWrite);
+        long records = recordLog.replay(this::applyRecord);
+        log.info("Opened job log {}: replayed {} records, {} live jobs", logPath, records, index.size());
+    }
+
+    @Override
+    public void save(TryOnJobEntry entry) {
+        byte[] record = encodePut(entry);
+        writeLock.lock();
+        try {
+            append(record);
+            index.put(entry.getJob().getJobId(), entry);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<TryOnJobEntry> findById(String jobId) {
+        return Optional.ofNullable(index.get(jobId));
+    }
+
+    @Override
+    public Collection<TryOnJobEntry> findAll() {
+        return List.copyOf(index.values());
+    }
+
+    @Override
+    public boolean remove(String jobId) {
+        writeLock.lock();
+        try {
+            if (!index.containsKey(jobId)) {
+                return false;
+            }
+            append(encodeDelete(jobId));
+            index.remove(jobId);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Rewrite the log with live entries only once it is mostly superseded records
+     */
+    @Scheduled(fixedDelayString = "${tryon.jobs.store.compaction.interval-ms:300000}")
+    public void compact() {
+        long records = recordLog.getRecordCount();
+        if (records < compactionMinRecords || records < index.size() * compactionGarbageRatio) {
+            return;
+        }
+        // Store lock before log lock, so no record is appended but missing from the snapshot
+        writeLock.lock();
+        try {
+            int before = recordLog.getSizeBytes();
+            recordLog.rewrite(() -> {
+                List<byte[]> live = new ArrayList<>(index.size());
+                index.values().forEach(entry -> live.add(encodePut(entry)));
+                return live;
+            });
+            log.info("Compacted job log: {} records ({} bytes) -> {} records ({} bytes)",
+                    records, before, recordLog.getRecordCount(), recordLog.getSizeBytes());
+        } catch (IOException e) {
+            log.error("Job log compaction failed: {}", e.getMessage(), e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void applyRecord(ByteBuffer record) {
+        byte op = record.get();
+        byte[] body = new byte[record.remaining()];
+        record.get(body);
+        try {
+            if (op == OP_PUT) {
+                TryOnJobEntry entry = objectMapper.readValue(body, TryOnJobEntry.class);
+                index.put(entry.getJob().getJobId(), entry);
+            } else if (op == OP_DELETE) {
+                index.remove(new String(body, StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            log.warn("Skipping unreadable job record: {}", e.getMessage());
+        }
+    }
+
+    private byte[] encodePut(TryOnJobEntry entry) {
+        try {
+            return withOp(OP_PUT, objectMapper.writeValueAsBytes(entry));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize job " + entry.getJob().getJobId(), e);
+        }
+    }
+
+    private byte[] encodeDelete(String jobId) {
+        return withOp(OP_DELETE, jobId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private byte[] withOp(byte op, byte[] body) {
+        byte[] record = new byte[body.length + 1];
+        record[0] = op;
+        System.arraycopy(body, 0, record, 1, body.length);
+        return record;
+    }
+
+    private void append(byte[] record) {
+        try {
+            recordLog.append(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write job log " + logPath, e);
+        }
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        recordLog.close();
+    }
+}
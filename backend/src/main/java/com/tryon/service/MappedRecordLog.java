@@ -0,0 +1,238 @@
+package com.tryon.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only record log backed by a memory-mapped file
+ *
+ * Each record is framed as [length:int][crc32:int][payload]. Replay stops at the first zero
+ * length or checksum mismatch, which discards a record torn by a crash mid-append together with
+ * everything after it: later appends reuse that space, so stale records left beyond the tear
+ * could otherwise line up again on a future replay. The mapping
+ * grows by doubling; {@link #rewrite} writes the live records to a new file and atomically
+ * swaps it in (compaction).
+ *
+ * Not a Spring bean - owned by the store that uses it. Thread-safe.
+ */
+@Slf4j
+public class MappedRecordLog implements Closeable {
+
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_MAPPED_BYTES = Integer.MAX_VALUE - 8;
+
+    private final Path file;
+    private final int initialSize;
+    private final boolean syncOnWrite;
+
+    // ReentrantLock rather than synchronized so virtual threads are not pinned while writing
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int position;
+    private long recordCount;
+
+    public MappedRecordLog(Path file, int initialSize, boolean syncOnWrite) throws IOException {
+        this.file = file;
+        this.initialSize = initialSize;
+        this.syncOnWrite = syncOnWrite;
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        map(Math.max(initialSize, (int) Math.min(Files.exists(file) ? Files.size(file) : 0, MAX_MAPPED_BYTES)));
+    }
+
+    /**
+     * Feed every valid record to the consumer and position the log after the last one
+     *
+     * @return number of records replayed
+     */
+    public long replay(Consumer<ByteBuffer> consumer) {
+        lock.lock();
+        try {
+            int pos = 0;
+            long count = 0;
+            CRC32 crc = new CRC32();
+
+            while (pos + HEADER_BYTES <= buffer.capacity()) {
+                int length = buffer.getInt(pos);
+                if (length <= 0) {
+                    break;
+                }
+                if (pos + HEADER_BYTES + (long) length > buffer.capacity()) {
+                    log.warn("Truncated record at offset {} in {}, discarding tail", pos, file);
+                    clear(pos, buffer.capacity() - pos);
+                    break;
+                }
+
+                ByteBuffer payload = buffer.slice(pos + HEADER_BYTES, length).asReadOnlyBuffer();
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != buffer.getInt(pos + 4)) {
+                    log.warn("Checksum mismatch at offset {} in {}, discarding tail", pos, file);
+                    clear(pos, buffer.capacity() - pos);
+                    break;
+                }
+
+                consumer.accept(payload);
+                pos += HEADER_BYTES + length;
+                count++;
+            }
+
+            position = pos;
+            recordCount = count;
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Append one record, growing the mapping when needed
+     */
+    public void append(byte[] payload) throws IOException {
+        appendAll(List.of(payload));
+    }
+
+    /**
+     * Append several records with a single sync when sync-on-write is enabled
+     */
+    public void appendAll(List<byte[]> payloads) throws IOException {
+        lock.lock();
+        try {
+            int start = position;
+            CRC32 crc = new CRC32();
+            for (byte[] payload : payloads) {
+                int recordBytes = HEADER_BYTES + payload.length;
+                ensureCapacity(recordBytes);
+
+                crc.reset();
+                crc.update(payload);
+
+                // Length is written last: a zero length marks the end of the log during replay
+                buffer.put(position + HEADER_BYTES, payload);
+                buffer.putInt(position + 4, (int) crc.getValue());
+                buffer.putInt(position, payload.length);
+
+                position += recordBytes;
+                recordCount++;
+            }
+            if (syncOnWrite && position > start) {
+                buffer.force(start, position - start);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replace the log contents with the given records (compaction)
+     *
+     * The supplier is invoked while holding the log lock, so no append can slip in between
+     * taking the snapshot and swapping the file.
+     */
+    public void rewrite(Supplier<List<byte[]>> liveRecords) throws IOException {
+        lock.lock();
+        try {
+            List<byte[]> records = liveRecords.get();
+            Path tempFile = file.resolveSibling(file.getFileName() + ".compact");
+
+            long written = 0;
+            try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                CRC32 crc = new CRC32();
+                for (byte[] payload : records) {
+                    crc.reset();
+                    crc.update(payload);
+                    ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+                    record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+                    while (record.hasRemaining()) {
+                        written += out.write(record);
+                    }
+                }
+                out.force(true);
+            }
+
+            channel.close();
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            map(nextCapacity((int) Math.min(written, MAX_MAPPED_BYTES), HEADER_BYTES));
+            position = (int) written;
+            recordCount = records.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public int getSizeBytes() {
+        return position;
+    }
+
+    private void ensureCapacity(int recordBytes) throws IOException {
+        if ((long) position + recordBytes <= buffer.capacity()) {
+            return;
+        }
+        if ((long) position + recordBytes > MAX_MAPPED_BYTES) {
+            throw new IOException("Record log " + file + " is full - compaction required");
+        }
+        map(nextCapacity(position, recordBytes));
+    }
+
+    private int nextCapacity(int used, int extra) {
+        long capacity = Math.max(initialSize, buffer != null ? buffer.capacity() : 0);
+        while (capacity < (long) used + extra || capacity < used * 2L) {
+            capacity *= 2;
+        }
+        return (int) Math.min(capacity, MAX_MAPPED_BYTES);
+    }
+
+    private void map(int size) throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * Zero a range and sync it, so appends over it are never followed by stale records
+     */
+    private void clear(int from, int length) {
+        byte[] zeros = new byte[Math.min(length, 64 * 1024)];
+        for (int offset = from; offset < from + length; offset += zeros.length) {
+            buffer.put(offset, zeros, 0, Math.min(zeros.length, from + length - offset));
+        }
+        buffer.force(from, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            buffer.force();
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
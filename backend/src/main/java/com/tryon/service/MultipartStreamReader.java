@@ -0,0 +1,278 @@
+package com.tryon.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Pull parser for a multipart/form-data request body
+ *
+ * Parts are handed out one at a time with a body stream that ends at the next boundary, so file
+ * contents flow from the socket to their destination without being buffered to a temp file or
+ * held in memory. Each part's body must be consumed (or is skipped) before the next part is read.
+ *
+ * Not a Spring bean - one instance per request. Not thread-safe.
+ */
+public class MultipartStreamReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_BYTES = 8 * 1024;
+    private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private final byte[] buffer;
+    private int head;
+    private int tail;
+
+    private PartInputStream currentBody;
+    private boolean finished;
+
+    /**
+     * A form field or file
+     *
+     * @param filename null for plain form fields
+     */
+    public record Part(String name, String filename, String contentType, InputStream body) {
+
+        public boolean isFile() {
+            return filename != null;
+        }
+
+        /**
+         * Read a form field's value, rejecting values longer than {@code maxBytes}
+         */
+        public String readString(int maxBytes) throws IOException {
+            byte[] value = body.readNBytes(maxBytes + 1);
+            if (value.length > maxBytes) {
+                throw new IllegalArgumentException("Form field '" + name + "' exceeds " + maxBytes + " bytes");
+            }
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    public MultipartStreamReader(InputStream in, String boundary) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.buffer = new byte[Math.max(BUFFER_SIZE, delimiter.length * 4)];
+
+        // Pretend the body starts with CRLF so the first boundary matches the delimiter like every other
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        tail = 2;
+    }
+
+    /**
+     * Extract the boundary parameter from a multipart Content-Type header
+     *
+     * @throws IllegalArgumentException if the header is not multipart/form-data with a boundary
+     */
+    public static String boundaryOf(String contentType) {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/form-data")) {
+            throw new IllegalArgumentException("Request must be multipart/form-data");
+        }
+        String boundary = parameters(contentType).get("boundary");
+        if (boundary == null || boundary.isEmpty() || boundary.length() > 70) {
+            throw new IllegalArgumentException("Missing or invalid multipart boundary");
+        }
+        return boundary;
+    }
+
+    /**
+     * Advance to the next part, skipping whatever is left of the current one
+     *
+     * @return the next part, or null after the closing boundary
+     */
+    public Part nextPart() throws IOException {
+        if (finished) {
+            return null;
+        }
+
+        // The first call skips the preamble before the opening boundary
+        (currentBody != null ? currentBody : new PartInputStream()).skipRemaining();
+
+        if (!ensure(2)) {
+            throw new IOException("Unexpected end of multipart stream");
+        }
+        if (buffer[head] == '-' && buffer[head + 1] == '-') {
+            finished = true;
+            return null;
+        }
+        if (buffer[head] != '\r' || buffer[head + 1] != '\n') {
+            throw new IOException("Malformed multipart boundary");
+        }
+        head += 2;
+
+        Map<String, String> headers = readHeaders();
+        Map<String, String> disposition = parameters(headers.getOrDefault("content-disposition", ""));
+        currentBody = new PartInputStream();
+        return new Part(disposition.get("name"), disposition.get("filename"), headers.get("content-type"), currentBody);
+    }
+
+    private Map<String, String> readHeaders() throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (ensure(2) && buffer[head] == '\r' && buffer[head + 1] == '\n') {
+            head += 2;
+            return headers;
+        }
+
+        int end;
+        while ((end = indexOf(HEADER_END, head, tail)) < 0) {
+            if (tail - head >= MAX_HEADER_BYTES) {
+                throw new IOException("Multipart part headers exceed " + MAX_HEADER_BYTES + " bytes");
+            }
+            if (!fill()) {
+                throw new IOException("Unexpected end of multipart stream");
+            }
+        }
+
+        String block = new String(buffer, head, end - head, StandardCharsets.UTF_8);
+        head = end + HEADER_END.length;
+        for (String line : block.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * Parse ";"-separated key=value parameters, honouring quoted values
+     */
+    private static Map<String, String> parameters(String header) {
+        Map<String, String> params = new LinkedHashMap<>();
+        int i = header.indexOf(';');
+        while (i >= 0 && i < header.length()) {
+            int eq = header.indexOf('=', i);
+            if (eq < 0) {
+                break;
+            }
+            String key = header.substring(i + 1, eq).trim().toLowerCase(Locale.ROOT);
+            int start = eq + 1;
+            String value;
+            if (start < header.length() && header.charAt(start) == '"') {
+                StringBuilder quoted = new StringBuilder();
+                int j = start + 1;
+                while (j < header.length() && header.charAt(j) != '"') {
+                    if (header.charAt(j) == '\\' && j + 1 < header.length()) {
+                        j++;
+                    }
+                    quoted.append(header.charAt(j++));
+                }
+                value = quoted.toString();
+                i = header.indexOf(';', j);
+            } else {
+                int next = header.indexOf(';', start);
+                value = header.substring(start, next < 0 ? header.length() : next).trim();
+                i = next;
+            }
+            params.put(key, value);
+        }
+        return params;
+    }
+
+    /**
+     * Make at least {@code count} unread bytes available
+     *
+     * @return false if the stream ended first
+     */
+    private boolean ensure(int count) throws IOException {
+        while (tail - head < count) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compact the buffer and read more input
+     *
+     * @return false at end of input
+     */
+    private boolean fill() throws IOException {
+        if (head > 0) {
+            System.arraycopy(buffer, head, buffer, 0, tail - head);
+            tail -= head;
+            head = 0;
+        }
+        if (tail == buffer.length) {
+            throw new IOException("Multipart buffer overflow");
+        }
+        int read = in.read(buffer, tail, buffer.length - tail);
+        if (read < 0) {
+            return false;
+        }
+        tail += read;
+        return true;
+    }
+
+    private int indexOf(byte[] pattern, int from, int to) {
+        outer:
+        for (int i = from; i <= to - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (buffer[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Body of the current part: ends just before the next delimiter, which it consumes
+     */
+    private class PartInputStream extends InputStream {
+
+        private boolean done;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (done) {
+                return -1;
+            }
+            if (length == 0) {
+                return 0;
+            }
+            while (true) {
+                int found = indexOf(delimiter, head, tail);
+                if (found == head) {
+                    head += delimiter.length;
+                    done = true;
+                    return -1;
+                }
+
+                // Bytes before a delimiter, or that are too far from the end to start one, are body data
+                int available = found >= 0 ? found - head : tail - head - (delimiter.length - 1);
+                if (available > 0) {
+                    int count = Math.min(length, available);
+                    System.arraycopy(buffer, head, target, offset, count);
+                    head += count;
+                    return count;
+                }
+                if (!fill()) {
+                    throw new IOException("Unexpected end of multipart stream");
+                }
+            }
+        }
+
+        void skipRemaining() throws IOException {
+            byte[] discard = new byte[8192];
+            while (read(discard, 0, discard.length) >= 0) {
+                // discard
+            }
+        }
+    }
+}
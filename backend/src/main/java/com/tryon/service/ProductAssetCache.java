@@ -0,0 +1,130 @@
+package com.tryon.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ready-to-send Gemini payloads for catalog product images
+ *
+ * Holds each product's normalized image already Base64-encoded, so a try-on against a hot
+ * product neither reads the image from disk nor encodes it again. Bounded by total payload
+ * bytes with least-recently-used eviction; ProductService invalidates a product's entry when
+ * the product is replaced, updated or deleted.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductAssetCache {
+
+    private final ImageNormalizationService imageNormalizationService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${tryon.product-assets.max-bytes:67108864}")
+    private long maxBytes;
+
+    // Access-ordered: iteration starts at the least recently used product
+    private final LinkedHashMap<String, ProductAsset> assets = new LinkedHashMap<>(64, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    private Counter hitCounter;
+    private Counter missCounter;
+
+    private record ProductAsset(Path source, String mimeType, byte[] base64) {
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        hitCounter = meterRegistry.counter("tryon.product-assets.requests", "result", "hit");
+        missCounter = meterRegistry.counter("tryon.product-assets.requests", "result", "miss");
+        Gauge.builder("tryon.product-assets.bytes", cachedBytes, AtomicLong::get)
+                .description("Encoded product image bytes held for Gemini requests")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Request image part for a catalog product, loading and encoding it on first use
+     *
+     * @param imagePath the product's image file, used on a miss
+     */
+    public GeminiRequestWriter.ImagePart getImagePart(String productId, Path imagePath) throws IOException {
+        lock.lock();
+        try {
+            ProductAsset asset = assets.get(productId);
+            if (asset != null && asset.source().equals(imagePath)) {
+                hitCounter.increment();
+                return GeminiRequestWriter.fromBase64(asset.base64(), asset.mimeType());
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        missCounter.increment();
+        ImageNormalizationService.NormalizedImage normalized = imageNormalizationService.normalizeCached(imagePath);
+        byte[] base64;
+        try {
+            base64 = Base64.getEncoder().encode(Files.readAllBytes(normalized.path()));
+        } finally {
+            imageNormalizationService.release(normalized);
+        }
+
+        ProductAsset asset = new ProductAsset(imagePath, normalized.mimeType(), base64);
+        put(productId, asset);
+        log.debug("Cached product asset {} ({}, {} bytes encoded)", productId, asset.mimeType(), base64.length);
+        return GeminiRequestWriter.fromBase64(asset.base64(), asset.mimeType());
+    }
+
+    /**
+     * Drop a product's payload after its image or record changed
+     */
+    public void invalidate(String productId) {
+        lock.lock();
+        try {
+            ProductAsset removed = assets.remove(productId);
+            if (removed != null) {
+                cachedBytes.addAndGet(-removed.base64().length);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(String productId, ProductAsset asset) {
+        if (asset.base64().length > maxBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            ProductAsset previous = assets.put(productId, asset);
+            cachedBytes.addAndGet(asset.base64().length - (previous != null ? previous.base64().length : 0));
+
+            Iterator<Map.Entry<String, ProductAsset>> eldest = assets.entrySet().iterator();
+            while (cachedBytes.get() > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, ProductAsset> evicted = eldest.next();
+                if (evicted.getKey().equals(productId)) {
+                    continue;
+                }
+                eldest.remove();
+                cachedBytes.addAndGet(-evicted.getValue().base64().length);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
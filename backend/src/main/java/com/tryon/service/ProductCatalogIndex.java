@@ -0,0 +1,273 @@
+package com.tryon.service;
+
+import com.tryon.dto.ProductResponse;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Secondary indexes over the product catalog for filtered, cursor-paginated listing
+ *
+ * Products are kept in a skip list ordered newest first (createdAt descending, then id), with
+ * inverted indexes from category, size and color to keys in the same order. A query walks the
+ * smallest matching index from the cursor position, checks the remaining filters on each product
+ * and stops as soon as the page is full, so its cost follows the page size instead of the
+ * catalog size and nothing is sorted per request.
+ *
+ * Not a Spring bean - owned by ProductService. Writes are serialized; reads take no lock.
+ */
+public class ProductCatalogIndex {
+
+    private static final Comparator<CatalogKey> NEWEST_FIRST = Comparator
+            .comparing(CatalogKey::createdAt, Comparator.reverseOrder())
+            .thenComparing(CatalogKey::id);
+
+    /**
+     * Position of a product in listing order
+     */
+    public record CatalogKey(LocalDateTime createdAt, String id) {
+    }
+
+    /**
+     * Listing filters; null fields match everything. Text filters ignore case.
+     */
+    public record Filter(String category, BigDecimal minPrice, BigDecimal maxPrice, String size, String color) {
+
+        public static final Filter NONE = new Filter(null, null, null, null, null);
+
+        public Filter {
+            category = blankToNull(category);
+            size = blankToNull(size);
+            color = blankToNull(color);
+        }
+
+        boolean matches(ProductResponse product) {
+            if (category != null && (product.getCategory() == null
+                    || !normalize(category).equals(normalize(product.getCategory())))) {
+                return false;
+            }
+            if (minPrice != null || maxPrice != null) {
+                BigDecimal price = product.getPrice();
+                if (price == null
+                        || (minPrice != null && price.compareTo(minPrice) < 0)
+                        || (maxPrice != null && price.compareTo(maxPrice) > 0)) {
+                    return false;
+                }
+            }
+            if (size != null && !normalizedTerms(product.getSizes()).contains(normalize(size))) {
+                return false;
+            }
+            return color == null || colorsOf(product).contains(normalize(color));
+        }
+    }
+
+    /**
+     * One page of results
+     *
+     * @param nextCursor opaque position to pass back for the following page, null on the last page
+     */
+    public record Page(List<ProductResponse> items, String nextCursor) {
+    }
+
+    /**
+     * Keys of the products carrying one category, size or color, with a count kept alongside
+     * because a concurrent set's size() walks the whole set
+     */
+    private static final class Postings {
+        final NavigableSet<CatalogKey> keys = new ConcurrentSkipListSet<>(NEWEST_FIRST);
+        final AtomicInteger count = new AtomicInteger();
+    }
+
+    private static final Postings NO_POSTINGS = new Postings();
+
+    private final ConcurrentSkipListMap<CatalogKey, ProductResponse> byCreated = new ConcurrentSkipListMap<>(NEWEST_FIRST);
+    private final Map<String, CatalogKey> keysById = new ConcurrentHashMap<>();
+    private final Map<String, Postings> byCategory = new ConcurrentHashMap<>();
+    private final Map<String, Postings> bySize = new ConcurrentHashMap<>();
+    private final Map<String, Postings> byColor = new ConcurrentHashMap<>();
+
+    // ReentrantLock rather than synchronized so virtual threads are not pinned
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * Add a product, or re-index it after an update
+     */
+    public void put(ProductResponse product) {
+        CatalogKey key = new CatalogKey(product.getCreatedAt(), product.getId());
+        writeLock.lock();
+        try {
+            unindex(product.getId());
+            // The listing entry goes in last so a reader reaching it through a posting always finds it
+            add(byCategory, product.getCategory() != null ? Set.of(normalize(product.getCategory())) : Set.of(), key);
+            add(bySize, normalizedTerms(product.getSizes()), key);
+            add(byColor, colorsOf(product), key);
+            keysById.put(product.getId(), key);
+            byCreated.put(key, product);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void remove(String productId) {
+        writeLock.lock();
+        try {
+            unindex(productId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Every product, newest first
+     */
+    public Collection<ProductResponse> all() {
+        return byCreated.values();
+    }
+
+    /**
+     * Products matching {@code filter}, newest first, starting after {@code cursor}
+     *
+     * @param cursor a previous page's nextCursor, or null for the first page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public Page query(Filter filter, String cursor, int limit) {
+        NavigableSet<CatalogKey> candidates = drivingIndex(filter);
+        if (cursor != null && !cursor.isBlank()) {
+            candidates = candidates.tailSet(decodeCursor(cursor), false);
+        }
+
+        List<ProductResponse> items = new ArrayList<>(Math.min(limit, 256));
+        CatalogKey last = null;
+        for (CatalogKey key : candidates) {
+            // Filters are re-checked against the listed product: postings can briefly lag an update
+            ProductResponse product = byCreated.get(key);
+            if (product == null || !filter.matches(product)) {
+                continue;
+            }
+            if (items.size() == limit) {
+                return new Page(items, encodeCursor(last));
+            }
+            items.add(product);
+            last = key;
+        }
+        return new Page(items, null);
+    }
+
+    /**
+     * The smallest index that every match must appear in
+     */
+    private NavigableSet<CatalogKey> drivingIndex(Filter filter) {
+        List<Postings> applicable = new ArrayList<>(3);
+        if (filter.category() != null) {
+            applicable.add(byCategory.getOrDefault(normalize(filter.category()), NO_POSTINGS));
+        }
+        if (filter.size() != null) {
+            applicable.add(bySize.getOrDefault(normalize(filter.size()), NO_POSTINGS));
+        }
+        if (filter.color() != null) {
+            applicable.add(byColor.getOrDefault(normalize(filter.color()), NO_POSTINGS));
+        }
+        return applicable.stream()
+                .min(Comparator.comparingInt(postings -> postings.count.get()))
+                .map(postings -> postings.keys)
+                .orElse(byCreated.navigableKeySet());
+    }
+
+    /**
+     * Drop a product from every index; the caller holds the write lock
+     */
+    private void unindex(String productId) {
+        CatalogKey key = keysById.remove(productId);
+        if (key == null) {
+            return;
+        }
+        ProductResponse previous = byCreated.remove(key);
+        if (previous == null) {
+            return;
+        }
+        discard(byCategory, previous.getCategory() != null ? Set.of(normalize(previous.getCategory())) : Set.of(), key);
+        discard(bySize, normalizedTerms(previous.getSizes()), key);
+        discard(byColor, colorsOf(previous), key);
+    }
+
+    private static void add(Map<String, Postings> index, Set<String> terms, CatalogKey key) {
+        for (String term : terms) {
+            Postings postings = index.computeIfAbsent(term, t -> new Postings());
+            if (postings.keys.add(key)) {
+                postings.count.incrementAndGet();
+            }
+        }
+    }
+
+    private static void discard(Map<String, Postings> index, Set<String> terms, CatalogKey key) {
+        for (String term : terms) {
+            Postings postings = index.get(term);
+            if (postings != null && postings.keys.remove(key) && postings.count.decrementAndGet() == 0) {
+                index.remove(term);
+            }
+        }
+    }
+
+    private static Set<String> colorsOf(ProductResponse product) {
+        Set<String> colors = normalizedTerms(product.getColors());
+        if (product.getColor() != null && !product.getColor().isBlank()) {
+            colors.add(normalize(product.getColor()));
+        }
+        return colors;
+    }
+
+    private static Set<String> normalizedTerms(List<String> values) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (values != null) {
+            for (String value : values) {
+                if (value != null && !value.isBlank()) {
+                    terms.add(normalize(value));
+                }
+            }
+        }
+        return terms;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String encodeCursor(CatalogKey key) {
+        String position = key.createdAt() + "\n" + key.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static CatalogKey decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf('\n');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new CatalogKey(LocalDateTime.parse(position.substring(0, separator)), position.substring(separator + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package com.tryon.service;
+
+import com.tryon.dto.ProductResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Durable product catalog: a binary snapshot plus a write-ahead log of changes since it
+ *
+ * Every create, update and delete is appended to a memory-mapped log (catalog.wal) before it
+ * is applied in memory. A checkpoint writes all live products to a new snapshot
+ * (catalog.snapshot), swaps it in atomically and empties the log. On startup the snapshot is
+ * memory-mapped and decoded in one pass, then the log tail is replayed on top, so loading costs
+ * a sequential read of compact records rather than parsing JSON. Replaying a log over a newer
+ * snapshot (a crash between the swap and emptying the log) converges on the same catalog,
+ * because every record holds a product's full state.
+ *
+ * ProductService serializes writes and checkpoints, so the log order matches the order changes
+ * were applied in memory.
+ */
+@Component
+@Slf4j
+public class ProductCatalogStore {
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+
+    private static final int SNAPSHOT_MAGIC = 0x54434153; // "TCAS"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER_BYTES = 16;
+    private static final int SNAPSHOT_WRITE_BUFFER = 1024 * 1024;
+    private static final long SNAPSHOT_MAP_WINDOW = 1L << 30;
+
+    private static final long NULL_TIME = Long.MIN_VALUE;
+
+    @Value("${catalog.store.enabled:true}")
+    private boolean enabled;
+
+    @Value("${catalog.store.directory:./storage/catalog}")
+    private String directory;
+
+    @Value("${catalog.store.wal-initial-size-mb:16}")
+    private int walInitialSizeMb;
+
+    @Value("${catalog.store.sync-on-write:true}")
+    private boolean syncOnWrite;
+
+    @Value("${catalog.store.checkpoint.min-records:50000}")
+    private long checkpointMinRecords;
+
+    private Path snapshotFile;
+    private MappedRecordLog wal;
+
+    @PostConstruct
+    void open() throws IOException {
+        if (!enabled) {
+            log.info("Catalog persistence disabled - products are kept in memory only");
+            return;
+        }
+        Path root = Paths.get(directory);
+        snapshotFile = root.resolve("catalog.snapshot");
+        wal = new MappedRecordLog(root.resolve("catalog.wal"), walInitialSizeMb * 1024 * 1024, syncOnWrite);
+    }
+
+    /**
+     * Read the persisted catalog: the snapshot, then the log records written since it
+     *
+     * @return live products keyed by ID, in the order they were last written
+     * @throws IOException if the snapshot cannot be read; starting empty would let the seed data
+     *                     and the next checkpoint overwrite the real catalog
+     */
+    public Map<String, ProductResponse> load() throws IOException {
+        if (!enabled) {
+            return new LinkedHashMap<>();
+        }
+
+        long start = System.nanoTime();
+        Decoder decoder = new Decoder();
+        Map<String, ProductResponse> products = readSnapshot(decoder);
+        long fromSnapshot = products.size();
+        long fromLog = wal.replay(record -> applyRecord(record, products, decoder));
+        log.info("Loaded catalog in {} ms: {} products from snapshot, {} log records replayed, {} live products",
+                (System.nanoTime() - start) / 1_000_000, fromSnapshot, fromLog, products.size());
+        return products;
+    }
+
+    public void put(ProductResponse product) {
+        putAll(List.of(product));
+    }
+
+    /**
+     * Log a batch of created or updated products with one sync
+     */
+    public void putAll(Collection<ProductResponse> products) {
+        if (!enabled || products.isEmpty()) {
+            return;
+        }
+        List<byte[]> records = new ArrayList<>(products.size());
+        for (ProductResponse product : products) {
+            records.add(encodePut(product));
+        }
+        append(records);
+    }
+
+    public void delete(String productId) {
+        if (!enabled) {
+            return;
+        }
+        byte[] id = productId.getBytes(StandardCharsets.UTF_8);
+        byte[] record = new byte[id.length + 1];
+        record[0] = OP_DELETE;
+        System.arraycopy(id, 0, record, 1, id.length);
+        append(List.of(record));
+    }
+
+    /**
+     * Whether the log has grown enough that a checkpoint should fold it into the snapshot
+     */
+    public boolean needsCheckpoint() {
+        return enabled && wal.getRecordCount() >= checkpointMinRecords;
+    }
+
+    /**
+     * Whether any change is only in the log
+     */
+    public boolean hasLoggedChanges() {
+        return enabled && wal.getRecordCount() > 0;
+    }
+
+    /**
+     * Write {@code products} as the new snapshot and empty the log
+     *
+     * The caller must keep the catalog from changing until this returns.
+     */
+    public void checkpoint(Collection<ProductResponse> products) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        long records = wal.getRecordCount();
+        long written = writeSnapshot(products);
+        wal.rewrite(List::of);
+        log.info("Catalog checkpoint: {} products ({} bytes) written, {} log records folded in {} ms",
+                products.size(), written, records, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private Map<String, ProductResponse> readSnapshot(Decoder decoder) throws IOException {
+        if (!Files.exists(snapshotFile)) {
+            return new LinkedHashMap<>();
+        }
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < SNAPSHOT_HEADER_BYTES) {
+                throw new IOException("Catalog snapshot " + snapshotFile + " is truncated");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, SNAPSHOT_HEADER_BYTES);
+            if (header.getInt() != SNAPSHOT_MAGIC || header.getInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Catalog snapshot " + snapshotFile + " has an unknown format");
+            }
+            long count = header.getLong();
+            Map<String, ProductResponse> products = LinkedHashMap.newLinkedHashMap((int) Math.min(count, Integer.MAX_VALUE - 8));
+
+            // Mapped in windows so a snapshot may exceed the 2GB limit of a single mapping
+            long position = SNAPSHOT_HEADER_BYTES;
+            long windowStart = position;
+            MappedByteBuffer window = map(channel, windowStart, size);
+            for (long i = 0; i < count; i++) {
+                if (position + 4 > windowStart + window.capacity()) {
+                    windowStart = position;
+                    window = map(channel, windowStart, size);
+                }
+                int length = window.getInt((int) (position - windowStart));
+                if (length < 0 || position + 4 + length > size) {
+                    throw new IOException("Catalog snapshot " + snapshotFile + " is truncated at product " + i);
+                }
+                if (position + 4 + length > windowStart + window.capacity()) {
+                    windowStart = position;
+                    window = map(channel, windowStart, size);
+                }
+                ProductResponse product = decoder.product(window.slice((int) (position - windowStart) + 4, length));
+                products.put(product.getId(), product);
+                position += 4 + length;
+            }
+            return products;
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long from, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(SNAPSHOT_MAP_WINDOW, size - from));
+    }
+
+    /**
+     * Write the snapshot next to the live one, sync it and move it into place
+     *
+     * The directory is synced after the move, so the rename is durable before the caller
+     * empties the log it supersedes.
+     *
+     * @return bytes written
+     */
+    private long writeSnapshot(Collection<ProductResponse> products) throws IOException {
+        Path tempFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        long count = 0;
+        long written = 0;
+        try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_WRITE_BUFFER);
+            buffer.position(SNAPSHOT_HEADER_BYTES);
+            for (ProductResponse product : products) {
+                byte[] encoded = encodeProduct(product);
+                if (buffer.remaining() < 4 + encoded.length) {
+                    written += flush(buffer, out);
+                    if (buffer.capacity() < 4 + encoded.length) {
+                        buffer = ByteBuffer.allocate(4 + encoded.length);
+                    }
+                }
+                buffer.putInt(encoded.length).put(encoded);
+                count++;
+            }
+            written += flush(buffer, out);
+
+            // The header goes in last, once the product count is known
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES)
+                    .putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putLong(count).flip();
+            while (header.hasRemaining()) {
+                out.write(header, header.position());
+            }
+            out.force(true);
+        }
+        Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(snapshotFile.toAbsolutePath().getParent());
+        return written;
+    }
+
+    private static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Some platforms (e.g. Windows) cannot open directories; their metadata is journaled instead
+            if (!System.getProperty("os.name", "").startsWith("Windows")) {
+                throw e;
+            }
+        }
+    }
+
+    private static long flush(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        long bytes = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+        return bytes;
+    }
+
+    private void applyRecord(ByteBuffer record, Map<String, ProductResponse> products, Decoder decoder) {
+        byte op = record.get();
+        if (op == OP_PUT) {
+            ProductResponse product = decoder.product(record);
+            // Re-inserted so load order follows the latest write
+            products.remove(product.getId());
+            products.put(product.getId(), product);
+        } else if (op == OP_DELETE) {
+            byte[] id = new byte[record.remaining()];
+            record.get(id);
+            products.remove(new String(id, StandardCharsets.UTF_8));
+        }
+    }
+
+    private void append(List<byte[]> records) {
+        try {
+            wal.appendAll(records);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write catalog log in " + directory, e);
+        }
+    }
+
+    private static byte[] encodePut(ProductResponse product) {
+        byte[] body = encodeProduct(product);
+        byte[] record = new byte[body.length + 1];
+        record[0] = OP_PUT;
+        System.arraycopy(body, 0, record, 1, body.length);
+        return record;
+    }
+
+    /**
+     * Product fields in declaration order; strings and lists are length-prefixed, -1 meaning null
+     */
+    private static byte[] encodeProduct(ProductResponse product) {
+        Encoder out = new Encoder();
+        out.string(product.getId());
+        out.string(product.getName());
+        out.string(product.getSku());
+        out.string(product.getColor());
+        out.string(product.getDescription());
+        out.decimal(product.getPrice());
+        out.string(product.getCategory());
+        out.strings(product.getSizes());
+        out.strings(product.getColors());
+        out.string(product.getImageUrl());
+        out.string(product.getOriginalFilename());
+        out.time(product.getCreatedAt());
+        out.time(product.getUpdatedAt());
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads products written by {@link #encodeProduct}, one load at a time
+     *
+     * Strings are decoded through a reused scratch array, and short values that repeat across the
+     * catalog (category, color, sizes, colors) share one instance each.
+     */
+    private static final class Decoder {
+
+        private static final int MAX_SHARED_BYTES = 32;
+        private static final int MAX_SHARED_VALUES = 4096;
+
+        private final Map<String, String> shared = new HashMap<>();
+        private byte[] scratch = new byte[256];
+
+        ProductResponse product(ByteBuffer in) {
+            return ProductResponse.builder()
+                    .id(string(in, false))
+                    .name(string(in, false))
+                    .sku(string(in, false))
+                    .color(string(in, true))
+                    .description(string(in, false))
+                    .price(decimal(in))
+                    .category(string(in, true))
+                    .sizes(strings(in))
+                    .colors(strings(in))
+                    .imageUrl(string(in, false))
+                    .originalFilename(string(in, false))
+                    .createdAt(time(in))
+                    .updatedAt(time(in))
+                    .build();
+        }
+
+        private String string(ByteBuffer in, boolean share) {
+            int length = in.getInt();
+            if (length < 0) {
+                return null;
+            }
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            in.get(scratch, 0, length);
+            String value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+            if (!share || length > MAX_SHARED_BYTES) {
+                return value;
+            }
+            String existing = shared.get(value);
+            if (existing != null) {
+                return existing;
+            }
+            if (shared.size() < MAX_SHARED_VALUES) {
+                shared.put(value, value);
+            }
+            return value;
+        }
+
+        private List<String> strings(ByteBuffer in) {
+            int count = in.getInt();
+            if (count < 0) {
+                return null;
+            }
+            List<String> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                values.add(string(in, true));
+            }
+            return values;
+        }
+
+        private BigDecimal decimal(ByteBuffer in) {
+            int length = in.getInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] unscaled = new byte[length];
+            in.get(unscaled);
+            return new BigDecimal(new BigInteger(unscaled), in.getInt());
+        }
+
+        private LocalDateTime time(ByteBuffer in) {
+            long seconds = in.getLong();
+            int nanos = in.getInt();
+            return seconds == NULL_TIME ? null : LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+        }
+    }
+
+    /**
+     * Growable big-endian buffer matching the ByteBuffer reads above
+     */
+    private static final class Encoder {
+
+        private ByteBuffer buffer = ByteBuffer.allocate(512);
+
+        void string(String value) {
+            if (value == null) {
+                ensure(4).putInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensure(4 + bytes.length).putInt(bytes.length).put(bytes);
+        }
+
+        void strings(List<String> values) {
+            if (values == null) {
+                ensure(4).putInt(-1);
+                return;
+            }
+            ensure(4).putInt(values.size());
+            values.forEach(this::string);
+        }
+
+        void decimal(BigDecimal value) {
+            if (value == null) {
+                ensure(4).putInt(-1);
+                return;
+            }
+            byte[] unscaled = value.unscaledValue().toByteArray();
+            ensure(8 + unscaled.length).putInt(unscaled.length).put(unscaled).putInt(value.scale());
+        }
+
+        void time(LocalDateTime value) {
+            ensure(12)
+                    .putLong(value != null ? value.toEpochSecond(ZoneOffset.UTC) : NULL_TIME)
+                    .putInt(value != null ? value.getNano() : 0);
+        }
+
+        byte[] toByteArray() {
+            byte[] bytes = new byte[buffer.position()];
+            buffer.get(0, bytes);
+            return bytes;
+        }
+
+        private ByteBuffer ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                grown.put(buffer.flip());
+                buffer = grown;
+            }
+            return buffer;
+        }
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (wal != null) {
+            wal.close();
+        }
+    }
+}
@@ -11,7 +11,7 @@ import java.util.List;
 
 /**
  * Initializes product data on application startup
- * This loads the 5 products that match the frontend images
+ * This loads the 5 products that match the frontend images into an empty catalog
  */
 @Component
 @RequiredArgsConstructor
@@ -22,6 +22,11 @@ public class ProductDataInitializer implements CommandLineRunner {
 
     @Override
     public void run(String... args) throws Exception {
+        // Seed only a new catalog; a restored one may have had these products edited or deleted
+        if (productService.getProductCount() > 0) {
+            log.info("Catalog restored with {} products, skipping product seed data", productService.getProductCount());
+            return;
+        }
         log.info("Initializing product data...");
         
         // Create the 5 products that match your uploaded images
@@ -0,0 +1,123 @@
+package com.tryon.service;
+
+import com.tryon.dto.ProductResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Finished try-on prompts for catalog products
+ *
+ * ProductService prepares a product's prompt when the product is created or updated, so a
+ * try-on submission only looks it up. Each entry is tied to the product version it was built
+ * from (the exact ProductResponse that was written), so an update replaces it and a stale entry
+ * is never served. Imported and restored products are prepared on their first try-on. Bounded
+ * by total prompt size with least-recently-used eviction.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductPromptCache {
+
+    private final PromptGeneratorService promptGeneratorService;
+    private final MeterRegistry meterRegistry;
+
+    // Counted in characters, which is bytes for the Latin-1 strings prompts almost always are
+    @Value("${tryon.product-prompts.max-bytes:33554432}")
+    private long maxBytes;
+
+    // Access-ordered: iteration starts at the least recently used product
+    private final LinkedHashMap<String, PreparedPrompt> prompts = new LinkedHashMap<>(64, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    private Counter hitCounter;
+    private Counter missCounter;
+
+    private record PreparedPrompt(ProductResponse source, String text) {
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        hitCounter = meterRegistry.counter("tryon.product-prompts.requests", "result", "hit");
+        missCounter = meterRegistry.counter("tryon.product-prompts.requests", "result", "miss");
+        Gauge.builder("tryon.product-prompts.bytes", cachedBytes, AtomicLong::get)
+                .description("Try-on prompts prepared for catalog products")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Build and keep the prompt for a product that was just created or updated
+     */
+    public void prepare(ProductResponse product) {
+        put(product.getId(), new PreparedPrompt(product, promptGeneratorService.generateProductPrompt(product)));
+    }
+
+    /**
+     * Prompt for the given version of a product, built now if it was not prepared
+     */
+    public String promptFor(ProductResponse product) {
+        lock.lock();
+        try {
+            PreparedPrompt prepared = prompts.get(product.getId());
+            if (prepared != null && prepared.source() == product) {
+                hitCounter.increment();
+                return prepared.text();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        missCounter.increment();
+        String text = promptGeneratorService.generateProductPrompt(product);
+        put(product.getId(), new PreparedPrompt(product, text));
+        return text;
+    }
+
+    /**
+     * Drop a product's prompt after it was deleted or replaced without preparing a new one
+     */
+    public void invalidate(String productId) {
+        lock.lock();
+        try {
+            PreparedPrompt removed = prompts.remove(productId);
+            if (removed != null) {
+                cachedBytes.addAndGet(-removed.text().length());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(String productId, PreparedPrompt prompt) {
+        if (prompt.text().length() > maxBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            PreparedPrompt previous = prompts.put(productId, prompt);
+            cachedBytes.addAndGet(prompt.text().length() - (previous != null ? previous.text().length() : 0));
+
+            Iterator<Map.Entry<String, PreparedPrompt>> eldest = prompts.entrySet().iterator();
+            while (cachedBytes.get() > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, PreparedPrompt> evicted = eldest.next();
+                if (evicted.getKey().equals(productId)) {
+                    continue;
+                }
+                eldest.remove();
+                cachedBytes.addAndGet(-evicted.getValue().text().length());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.tryon.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tryon.dto.ProductResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serialized JSON for product reads, ready to write to the response
+ *
+ * Each product is serialized once when it is written (or first read, for products restored at
+ * startup), and a listing page is assembled from those bytes the first time it is requested at
+ * a given catalog version, then served from memory until the next write. Every body carries a
+ * strong ETag derived from its content, so a page whose products did not change keeps its ETag
+ * across unrelated writes. Pages are bounded by total bytes with least-recently-used eviction;
+ * each page is weighed with its key and a fixed per-entry overhead, so requests for many
+ * distinct empty filters cannot grow the map unnoticed. Product bodies live as long as their
+ * product. ProductService keeps both in step with the catalog.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductResponseCache {
+
+    private static final byte[] EMPTY_ARRAY = {'[', ']'};
+
+    // Approximate heap cost of a page entry beyond its body and key strings (map node, records, ETag)
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${catalog.response-cache.max-page-bytes:33554432}")
+    private long maxPageBytes;
+
+    /**
+     * A response body and its ETag
+     *
+     * @param nextCursor for listing pages, the cursor of the following page; otherwise null
+     */
+    public record CachedJson(byte[] body, String etag, String nextCursor) {
+    }
+
+    /**
+     * Listing request after defaults are applied
+     */
+    public record PageKey(ProductCatalogIndex.Filter filter, String cursor, int limit) {
+    }
+
+    private record ProductJson(ProductResponse source, CachedJson json) {
+    }
+
+    private record PageJson(long catalogVersion, CachedJson json, long weight) {
+    }
+
+    private final Map<String, ProductJson> products = new ConcurrentHashMap<>();
+
+    // Access-ordered: iteration starts at the least recently used page
+    private final LinkedHashMap<PageKey, PageJson> pages = new LinkedHashMap<>(64, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong pageBytes = new AtomicLong();
+
+    private Counter hitCounter;
+    private Counter missCounter;
+
+    @PostConstruct
+    void registerMetrics() {
+        hitCounter = meterRegistry.counter("tryon.catalog.response-cache.requests", "result", "hit");
+        missCounter = meterRegistry.counter("tryon.catalog.response-cache.requests", "result", "miss");
+        Gauge.builder("tryon.catalog.response-cache.page-bytes", pageBytes, AtomicLong::get)
+                .description("Estimated heap held by cached product listing pages")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Serialize a product after it was created or updated
+     */
+    public void put(ProductResponse product) {
+        byte[] body = serialize(product);
+        products.put(product.getId(), new ProductJson(product, new CachedJson(body, etagOf(body), null)));
+    }
+
+    public void remove(String productId) {
+        products.remove(productId);
+    }
+
+    /**
+     * A product's serialized form, built on first use for products not written since startup
+     */
+    public CachedJson product(ProductResponse product) {
+        ProductJson cached = products.get(product.getId());
+        if (cached != null && cached.source() == product) {
+            return cached.json();
+        }
+        byte[] body = serialize(product);
+        CachedJson json = new CachedJson(body, etagOf(body), null);
+        // Keyed on the exact object, so an update racing this read is never overwritten with older bytes
+        if (cached == null) {
+            products.putIfAbsent(product.getId(), new ProductJson(product, json));
+        }
+        return json;
+    }
+
+    /**
+     * A listing page, built from {@code query} if the cached copy predates {@code catalogVersion}
+     *
+     * @param catalogVersion the catalog version read before {@code query} runs, so a page built
+     *                       while a write lands is rebuilt on the next request
+     */
+    public CachedJson page(PageKey key, long catalogVersion, Supplier<ProductCatalogIndex.Page> query) {
+        lock.lock();
+        try {
+            PageJson cached = pages.get(key);
+            if (cached != null && cached.catalogVersion() == catalogVersion) {
+                hitCounter.increment();
+                return cached.json();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        missCounter.increment();
+        ProductCatalogIndex.Page page = query.get();
+        byte[] body = concatenate(page);
+        CachedJson json = new CachedJson(body, etagOf(body), page.nextCursor());
+        putPage(key, new PageJson(catalogVersion, json, weigh(key, json)));
+        return json;
+    }
+
+    /**
+     * Drop every listing page after a catalog write
+     */
+    public void invalidatePages() {
+        lock.lock();
+        try {
+            pages.clear();
+            pageBytes.set(0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * JSON array of the page's products, copied from their serialized form
+     */
+    private byte[] concatenate(ProductCatalogIndex.Page page) {
+        if (page.items().isEmpty()) {
+            return EMPTY_ARRAY;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(page.items().size() * 512);
+        out.write('[');
+        for (ProductResponse product : page.items()) {
+            if (out.size() > 1) {
+                out.write(',');
+            }
+            out.writeBytes(product(product).body());
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    private void putPage(PageKey key, PageJson page) {
+        long size = page.weight();
+        if (size > maxPageBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            PageJson previous = pages.put(key, page);
+            pageBytes.addAndGet(size - (previous != null ? previous.weight() : 0));
+
+            Iterator<Map.Entry<PageKey, PageJson>> eldest = pages.entrySet().iterator();
+            while (pageBytes.get() > maxPageBytes && eldest.hasNext()) {
+                Map.Entry<PageKey, PageJson> evicted = eldest.next();
+                if (evicted.getKey().equals(key)) {
+                    continue;
+                }
+                eldest.remove();
+                pageBytes.addAndGet(-evicted.getValue().weight());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Heap held by a cached page: body, cursor and key strings (two bytes per char at worst), plus overhead
+     */
+    private static long weigh(PageKey key, CachedJson json) {
+        ProductCatalogIndex.Filter filter = key.filter();
+        long chars = length(key.cursor()) + length(json.nextCursor()) + json.etag().length()
+                + length(filter.category()) + length(filter.size()) + length(filter.color());
+        return json.body().length + 2 * chars + ENTRY_OVERHEAD_BYTES;
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    private byte[] serialize(ProductResponse product) {
+        try {
+            return objectMapper.writeValueAsBytes(product);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize product " + product.getId(), e);
+        }
+    }
+
+    /**
+     * Strong ETag: the first 128 bits of the body's SHA-256
+     */
+    private static String etagOf(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
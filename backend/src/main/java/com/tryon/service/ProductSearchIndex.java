@@ -0,0 +1,626 @@
+package com.tryon.service;
+
+import com.tryon.dto.ProductResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory full-text index over product name, description, category and colors
+ *
+ * Each product is tokenized into terms with a weighted frequency, so matches in the name count
+ * more than matches in the description, and results are ranked with BM25 over those weights.
+ * Every query term must match; the last one also matches as a prefix so "blue dre" finds
+ * "Blue Dress" while the user is still typing.
+ *
+ * Products are numbered in insertion order and each term's postings are parallel primitive
+ * arrays sorted by that number. A search enumerates the rarest query term's postings and
+ * advances a cursor through every other term's, so it costs a merge over a few arrays rather
+ * than per-product map lookups. Per-block score bounds let it skip postings that cannot make
+ * the requested top results, which keeps broad queries on large catalogs cheap.
+ *
+ * Not a Spring bean - owned by ProductService, which keeps it in step with the catalog.
+ */
+public class ProductSearchIndex {
+
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float CATEGORY_WEIGHT = 2.0f;
+    private static final float COLOR_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+
+    // BM25 term-frequency saturation and length normalization
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    // Prefix matches rank below whole-word matches of the same term
+    private static final float PREFIX_DISCOUNT = 0.8f;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int MAX_QUERY_TERMS = 16;
+    private static final int BLOCK_SIZE = 128;
+
+    // Words in nearly every description: they cost the most to match and say nothing about relevance
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "by", "for", "from", "in", "is", "it", "of", "on", "or",
+            "the", "this", "to", "with");
+
+    /**
+     * A product id with its relevance score, highest first in search results
+     */
+    public record Hit(String productId, double score) {
+    }
+
+    private record Document(int number, Map<String, Float> terms) {
+    }
+
+    /**
+     * One term's matches: product numbers ascending, with the term's weighted frequency in each.
+     * Each block of postings also records its highest frequency and shortest product, which bound
+     * the score of anything in it so a search can skip blocks that cannot reach its top results.
+     *
+     * Removed products are left in place with frequency 0, which scores as no match, and purged
+     * when products are renumbered; the block bounds stay valid since they only overestimate.
+     */
+    private final class PostingList {
+        int[] numbers = new int[4];
+        float[] frequencies = new float[4];
+        float[] blockMaxFrequency = new float[1];
+        float[] blockMinLength = new float[1];
+        int size;
+        int live;
+
+        void append(int number, float frequency) {
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            numbers[size] = number;
+            frequencies[size] = frequency;
+            size++;
+            live++;
+
+            // Fold the new entry into its block's bounds rather than rescanning the block
+            int block = (size - 1) / BLOCK_SIZE;
+            growBlocks(block + 1);
+            if ((size - 1) % BLOCK_SIZE == 0) {
+                blockMaxFrequency[block] = frequency;
+                blockMinLength[block] = lengths[number];
+            } else {
+                blockMaxFrequency[block] = Math.max(blockMaxFrequency[block], frequency);
+                blockMinLength[block] = Math.min(blockMinLength[block], lengths[number]);
+            }
+        }
+
+        void remove(int number) {
+            int index = Arrays.binarySearch(numbers, 0, size, number);
+            if (index >= 0 && frequencies[index] > 0) {
+                frequencies[index] = 0;
+                live--;
+            }
+        }
+
+        /**
+         * Drop removed products and apply new product numbers, which must keep their order
+         */
+        void compact(int[] renumbered) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (frequencies[i] > 0) {
+                    numbers[kept] = renumbered[numbers[i]];
+                    frequencies[kept] = frequencies[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            updateBlocks(0);
+        }
+
+        /**
+         * Recompute the bounds of every block from the one holding {@code from} onwards
+         */
+        void updateBlocks(int from) {
+            int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            growBlocks(blocks);
+            for (int block = from / BLOCK_SIZE; block < blocks; block++) {
+                float maxFrequency = 0;
+                float minLength = Float.MAX_VALUE;
+                for (int i = block * BLOCK_SIZE; i < Math.min(size, (block + 1) * BLOCK_SIZE); i++) {
+                    maxFrequency = Math.max(maxFrequency, frequencies[i]);
+                    minLength = Math.min(minLength, lengths[numbers[i]]);
+                }
+                blockMaxFrequency[block] = maxFrequency;
+                blockMinLength[block] = minLength;
+            }
+        }
+
+        private void growBlocks(int blocks) {
+            if (blocks > blockMaxFrequency.length) {
+                blockMaxFrequency = Arrays.copyOf(blockMaxFrequency, Math.max(blocks, blockMaxFrequency.length * 2));
+                blockMinLength = Arrays.copyOf(blockMinLength, blockMaxFrequency.length);
+            }
+        }
+
+        /**
+         * First index at or after {@code from} whose number is at least {@code number}
+         */
+        int advance(int from, int number) {
+            // Gallop ahead, then binary search the last step: cheap for both dense and sparse probes
+            int step = 1;
+            int low = from;
+            int high = from;
+            while (high < size && numbers[high] < number) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            high = Math.min(high, size);
+            int index = Arrays.binarySearch(numbers, low, high, number);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+
+    /**
+     * A posting list a query term matches, with its position during one search
+     */
+    private static final class Match {
+        final PostingList list;
+        final float idf;
+        final float boost;
+        int cursor;
+        float upperBound = -1;
+
+        Match(PostingList list, float idf, float boost) {
+            this.list = list;
+            this.idf = idf;
+            this.boost = boost;
+        }
+
+        /**
+         * BM25 score for a product with weighted frequency {@code tf} and weighted length {@code length}
+         */
+        float score(float tf, float length, float averageLength) {
+            return boost * idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / averageLength));
+        }
+
+        /**
+         * Highest score any product in this list could get
+         */
+        float upperBound(float averageLength) {
+            if (upperBound < 0) {
+                for (int block = 0; block * BLOCK_SIZE < list.size; block++) {
+                    upperBound = Math.max(upperBound,
+                            score(list.blockMaxFrequency[block], list.blockMinLength[block], averageLength));
+                }
+            }
+            return upperBound;
+        }
+    }
+
+    /**
+     * The best hits of one search. A product under several of a prefix's expansions is offered
+     * once per expansion and keeps its highest score.
+     */
+    private static final class TopHits {
+        private static final Comparator<Hit> RANKING = Comparator.comparingDouble(Hit::score)
+                .thenComparing(Hit::productId, Comparator.reverseOrder());
+
+        private final int limit;
+        private final PriorityQueue<Hit> heap;
+        private final Map<Integer, Hit> byNumber = new HashMap<>();
+
+        TopHits(int limit) {
+            this.limit = limit;
+            this.heap = new PriorityQueue<>(limit + 1, RANKING);
+        }
+
+        /**
+         * Whether a product scoring {@code score} could still be kept
+         */
+        boolean admits(float score) {
+            return heap.size() < limit || score >= heap.peek().score();
+        }
+
+        void offer(int number, String productId, float score) {
+            Hit existing = byNumber.get(number);
+            if (existing != null) {
+                if (existing.score() >= score) {
+                    return;
+                }
+                heap.remove(existing);
+                byNumber.remove(number);
+            }
+            if (heap.size() == limit) {
+                if (score <= heap.peek().score()) {
+                    return;
+                }
+                Hit evicted = heap.poll();
+                byNumber.values().remove(evicted);
+            }
+            Hit hit = new Hit(productId, score);
+            heap.add(hit);
+            byNumber.put(number, hit);
+        }
+
+        List<Hit> ranked() {
+            List<Hit> hits = new ArrayList<>(heap);
+            hits.sort(RANKING.reversed());
+            return hits;
+        }
+    }
+
+    // Term -> postings; sorted so prefixes are a range scan
+    private final NavigableMap<String, PostingList> postings = new TreeMap<>();
+    private final Map<String, Document> documents = new HashMap<>();
+    // Indexed by product number; numbers of removed products stay empty until renumbering
+    private String[] productIds = new String[1024];
+    private float[] lengths = new float[1024];
+    private int nextNumber;
+    private double totalLength;
+
+    // Read-write so concurrent searches never wait on each other, only on catalog writes
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Index a product, replacing any previous version of it
+     */
+    public void put(ProductResponse product) {
+        Map<String, Float> terms = new HashMap<>();
+        addTerms(terms, product.getName(), NAME_WEIGHT);
+        addTerms(terms, product.getCategory(), CATEGORY_WEIGHT);
+        addTerms(terms, product.getColor(), COLOR_WEIGHT);
+        if (product.getColors() != null) {
+            product.getColors().forEach(color -> addTerms(terms, color, COLOR_WEIGHT));
+        }
+        addTerms(terms, product.getDescription(), DESCRIPTION_WEIGHT);
+        float length = 0;
+        for (float weight : terms.values()) {
+            length += weight;
+        }
+
+        lock.writeLock().lock();
+        try {
+            unindex(product.getId());
+            if (nextNumber == productIds.length) {
+                if (nextNumber >= 2 * documents.size()) {
+                    renumber();
+                } else {
+                    productIds = Arrays.copyOf(productIds, nextNumber * 2);
+                    lengths = Arrays.copyOf(lengths, nextNumber * 2);
+                }
+            }
+
+            // Numbers only increase, so appending keeps every posting list sorted
+            int number = nextNumber++;
+            productIds[number] = product.getId();
+            lengths[number] = length;
+            for (Map.Entry<String, Float> term : terms.entrySet()) {
+                postings.computeIfAbsent(term.getKey(), t -> new PostingList()).append(number, term.getValue());
+            }
+            documents.put(product.getId(), new Document(number, terms));
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            unindex(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Products matching every term of {@code query}, best first
+     *
+     * @return at most {@code limit} hits; empty if the query has no searchable terms
+     */
+    public List<Hit> search(String query, int limit) {
+        List<String> queryTerms = tokenize(query, true);
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+        if (queryTerms.size() > MAX_QUERY_TERMS) {
+            queryTerms = queryTerms.subList(0, MAX_QUERY_TERMS);
+        }
+
+        lock.readLock().lock();
+        try {
+            if (documents.isEmpty()) {
+                return List.of();
+            }
+            float averageLength = (float) (totalLength / documents.size());
+
+            List<List<Match>> matches = new ArrayList<>(queryTerms.size());
+            for (int i = 0; i < queryTerms.size(); i++) {
+                List<Match> termMatches = resolve(queryTerms.get(i), i == queryTerms.size() - 1);
+                if (termMatches.isEmpty()) {
+                    return List.of();
+                }
+                matches.add(termMatches);
+            }
+
+            // Candidates come from one query term, one of its posting lists at a time; the other
+            // terms are probed in number order. Once the page is full, blocks and products whose
+            // best possible score cannot beat the lowest kept hit are skipped without probing.
+            int driverIndex = cheapestDriver(matches);
+            List<Match> driver = new ArrayList<>(matches.get(driverIndex));
+            List<List<Match>> others = new ArrayList<>(matches);
+            others.remove(driverIndex);
+            float othersBound = 0;
+            for (List<Match> termMatches : others) {
+                othersBound += upperBound(termMatches, averageLength);
+            }
+
+            // Lists that can score highest first, so the bar for the rest rises quickly
+            driver.sort(Comparator.comparingDouble((Match match) -> match.upperBound(averageLength)).reversed());
+            TopHits best = new TopHits(limit);
+            for (Match match : driver) {
+                PostingList list = match.list;
+                others.forEach(termMatches -> termMatches.forEach(other -> other.cursor = 0));
+                for (int block = 0; block * BLOCK_SIZE < list.size; block++) {
+                    int start = block * BLOCK_SIZE;
+                    int end = Math.min(list.size, start + BLOCK_SIZE);
+                    float blockBound = match.score(list.blockMaxFrequency[block], list.blockMinLength[block], averageLength);
+                    if (!best.admits(blockBound + othersBound)) {
+                        continue;
+                    }
+                    // Tighter: what the other terms can score within this block's range of products
+                    float rangeBound = 0;
+                    for (List<Match> termMatches : others) {
+                        rangeBound += rangeBound(termMatches, list.numbers[start], list.numbers[end - 1], averageLength);
+                    }
+                    if (!best.admits(blockBound + rangeBound)) {
+                        continue;
+                    }
+                    for (int i = start; i < end; i++) {
+                        if (list.frequencies[i] == 0) {
+                            continue;
+                        }
+                        int number = list.numbers[i];
+                        float score = match.score(list.frequencies[i], lengths[number], averageLength);
+                        if (best.admits(score + rangeBound)) {
+                            collect(best, others, number, score, averageLength);
+                        }
+                    }
+                }
+            }
+            return best.ranked();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The query term to enumerate candidates from: the one minimizing candidates times posting
+     * lists probed per candidate, so a rare word drives unless the others are broad prefixes
+     */
+    private static int cheapestDriver(List<List<Match>> matches) {
+        int totalLists = 0;
+        for (List<Match> termMatches : matches) {
+            totalLists += termMatches.size();
+        }
+        int cheapest = 0;
+        long cheapestCost = Long.MAX_VALUE;
+        for (int i = 0; i < matches.size(); i++) {
+            long cost = (long) postingCount(matches.get(i)) * (1 + totalLists - matches.get(i).size());
+            if (cost < cheapestCost) {
+                cheapest = i;
+                cheapestCost = cost;
+            }
+        }
+        return cheapest;
+    }
+
+    /**
+     * Finish scoring a candidate against the remaining query terms and keep it if it ranks
+     */
+    private void collect(TopHits best, List<List<Match>> others, int number, float driverScore, float averageLength) {
+        float score = driverScore;
+        for (List<Match> termMatches : others) {
+            float termScore = bestScore(termMatches, number, lengths[number], averageLength);
+            if (termScore == 0) {
+                return;
+            }
+            score += termScore;
+        }
+        best.offer(number, productIds[number], score);
+    }
+
+    /**
+     * Postings a query term matches: its own and, for typeahead, those of terms it prefixes
+     */
+    private List<Match> resolve(String term, boolean typeahead) {
+        List<Match> termMatches = new ArrayList<>();
+        PostingList exact = postings.get(term);
+        if (exact != null) {
+            termMatches.add(new Match(exact, idf(exact), 1.0f));
+        }
+        if (typeahead && term.length() >= MIN_PREFIX_LENGTH) {
+            // Keep the most common completions so "bl" reaches "blue" before rare "bla..." terms
+            PriorityQueue<PostingList> expansions =
+                    new PriorityQueue<>(Comparator.comparingInt((PostingList list) -> list.live));
+            for (PostingList expansion : postings.subMap(term, false, term + Character.MAX_VALUE, false).values()) {
+                if (expansion.live == 0) {
+                    continue;
+                }
+                expansions.add(expansion);
+                if (expansions.size() > MAX_PREFIX_EXPANSIONS) {
+                    expansions.poll();
+                }
+            }
+            for (PostingList expansion : expansions) {
+                termMatches.add(new Match(expansion, idf(expansion), PREFIX_DISCOUNT));
+            }
+        }
+        return termMatches;
+    }
+
+    /**
+     * BM25 score of a product for one query term, the best of the term's matches; 0 if none.
+     * Products must be probed in ascending number order.
+     */
+    private static float bestScore(List<Match> termMatches, int number, float length, float averageLength) {
+        float best = 0;
+        for (Match match : termMatches) {
+            PostingList list = match.list;
+            match.cursor = list.advance(match.cursor, number);
+            if (match.cursor < list.size && list.numbers[match.cursor] == number) {
+                best = Math.max(best, match.score(list.frequencies[match.cursor], length, averageLength));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Highest score any product could get for one query term
+     */
+    private static float upperBound(List<Match> termMatches, float averageLength) {
+        float bound = 0;
+        for (Match match : termMatches) {
+            bound = Math.max(bound, match.upperBound(averageLength));
+        }
+        return bound;
+    }
+
+    /**
+     * Highest score one query term could give any product numbered {@code first} to {@code last}.
+     * Moves the term's cursors to {@code first}, so ranges must be visited in ascending order.
+     */
+    private static float rangeBound(List<Match> termMatches, int first, int last, float averageLength) {
+        float bound = 0;
+        for (Match match : termMatches) {
+            PostingList list = match.list;
+            match.cursor = list.advance(match.cursor, first);
+            // advance() returns size once every posting precedes first; slots past size are stale
+            if (match.cursor >= list.size) {
+                continue;
+            }
+            for (int block = match.cursor / BLOCK_SIZE; block * BLOCK_SIZE < list.size; block++) {
+                if (list.numbers[Math.max(block * BLOCK_SIZE, match.cursor)] > last) {
+                    break;
+                }
+                bound = Math.max(bound, match.score(list.blockMaxFrequency[block], list.blockMinLength[block], averageLength));
+            }
+        }
+        return bound;
+    }
+
+    private float idf(PostingList list) {
+        return (float) Math.log(1 + (documents.size() - list.live + 0.5) / (list.live + 0.5));
+    }
+
+    private static int postingCount(List<Match> termMatches) {
+        int count = 0;
+        for (Match match : termMatches) {
+            count += match.list.size;
+        }
+        return count;
+    }
+
+    /**
+     * Drop a product's postings; the caller holds the write lock
+     */
+    private void unindex(String productId) {
+        Document document = documents.remove(productId);
+        if (document == null) {
+            return;
+        }
+        for (String term : document.terms().keySet()) {
+            PostingList list = postings.get(term);
+            if (list != null) {
+                list.remove(document.number());
+                if (list.live == 0) {
+                    postings.remove(term);
+                }
+            }
+        }
+        productIds[document.number()] = null;
+        totalLength -= lengths[document.number()];
+    }
+
+    /**
+     * Close the gaps left by removed products once they fill half the number space. Relative
+     * order is kept, so posting lists stay sorted. The caller holds the write lock.
+     */
+    private void renumber() {
+        int[] renumbered = new int[nextNumber];
+        String[] ids = new String[Math.max(1024, documents.size() * 2)];
+        float[] newLengths = new float[ids.length];
+        int next = 0;
+        for (int number = 0; number < nextNumber; number++) {
+            if (productIds[number] != null) {
+                renumbered[number] = next;
+                ids[next] = productIds[number];
+                newLengths[next] = lengths[number];
+                next++;
+            }
+        }
+        // Lengths are renumbered first: compacting recomputes block bounds from them
+        productIds = ids;
+        lengths = newLengths;
+        for (PostingList list : postings.values()) {
+            list.compact(renumbered);
+        }
+        documents.replaceAll((productId, document) -> new Document(renumbered[document.number()], document.terms()));
+        nextNumber = next;
+    }
+
+    private static void addTerms(Map<String, Float> terms, String text, float weight) {
+        for (String term : tokenize(text)) {
+            terms.merge(term, weight, Float::sum);
+        }
+    }
+
+    /**
+     * Lower-cased runs of letters and digits, minus stop words
+     */
+    static List<String> tokenize(String text) {
+        return tokenize(text, false);
+    }
+
+    /**
+     * As {@link #tokenize(String)}, but with {@code keepLast} a trailing stop word survives: in a
+     * query it may be the start of a longer word, as "in" is of "indigo", and still gets typeahead
+     */
+    static List<String> tokenize(String text, boolean keepLast) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String trailingStopWord = null;
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = lower.substring(start, i);
+                if (!STOP_WORDS.contains(token)) {
+                    tokens.add(token);
+                    trailingStopWord = null;
+                } else {
+                    trailingStopWord = token;
+                }
+                start = -1;
+            }
+        }
+        if (keepLast && trailingStopWord != null) {
+            tokens.add(trailingStopWord);
+        }
+        return tokens;
+    }
+}
@@ -2,23 +2,33 @@ package com.tryon.service;
 
 import com.tryon.dto.ProductRequest;
 import com.tryon.dto.ProductResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Service for managing product metadata and image storage
- * Uses in-memory storage for this prototype - can be replaced with JPA/database later
+ * Products are served from memory; ProductCatalogStore persists every change and restores them on startup
  */
 @Service
 @RequiredArgsConstructor
@@ -26,10 +36,53 @@ import java.util.concurrent.ConcurrentHashMap;
 public class ProductService {
 
     private final ImageStorageService imageStorageService;
+    private final ProductAssetCache productAssetCache;
+    private final ProductResponseCache responseCache;
+    private final ProductCatalogStore catalogStore;
+    private final ProductPromptCache productPromptCache;
 
-    // In-memory storage for prototype - replace with database in production
+    // Static images of the seeded catalog, referenced by imageUrl /products/<file>
+    @Value("${storage.catalog-images:../frontend/public/products}")
+    private String catalogImagesDirectory;
+
+    private static final int MAX_SEARCH_QUERY_LENGTH = 256;
+
+    @Value("${catalog.page.default-size:100}")
+    private int defaultPageSize;
+
+    @Value("${catalog.page.max-size:500}")
+    private int maxPageSize;
+
+    @Value("${catalog.search.default-results:20}")
+    private int defaultSearchResults;
+
+    @Value("${catalog.search.max-results:100}")
+    private int maxSearchResults;
+
+    // Live catalog, restored from ProductCatalogStore on startup
     private final Map<String, ProductResponse> products = new ConcurrentHashMap<>();
 
+    // Listing order and filter indexes, kept in step with every write to products
+    private final ProductCatalogIndex catalogIndex = new ProductCatalogIndex();
+    private final ProductSearchIndex searchIndex = new ProductSearchIndex();
+
+    // Bumped after every write; cached listing pages built at an older version are rebuilt
+    private final AtomicLong catalogVersion = new AtomicLong();
+
+    // Writes are serialized so the catalog log records them in the order they are applied.
+    // ReentrantLock rather than synchronized so virtual threads are not pinned
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * Restore the persisted catalog before the application starts serving
+     */
+    @PostConstruct
+    void loadCatalog() throws IOException {
+        // Indexed only: JSON bodies are built as restored products are first read
+        catalogStore.load().values().forEach(this::index);
+        catalogChanged();
+    }
+
     /**
      * Create a new product with image upload
      */
@@ -53,8 +106,7 @@ public class ProductService {
                 .updatedAt(LocalDateTime.now())
                 .build();
 
-        // Store in memory
-        products.put(productId, product);
+        save(product);
 
         log.info("Created product: {} with ID: {}", request.getName(), productId);
         return product;
@@ -80,8 +132,7 @@ public class ProductService {
                 .updatedAt(LocalDateTime.now())
                 .build();
 
-        // Store in memory
-        products.put(productId, product);
+        save(product);
 
         log.info("Created product from JSON: {} with ID: {}", request.getName(), productId);
         return product;
@@ -105,20 +156,100 @@ public class ProductService {
                 .updatedAt(LocalDateTime.now())
                 .build();
 
-        // Store in memory
-        products.put(productId, product);
+        save(product);
 
         log.info("Created product with ID {}: {}", productId, request.getName());
         return product;
     }
 
     /**
-     * Get all products with pagination support
+     * Add a batch of products, e.g. from a catalog import
+     *
+     * @param requestsById new products keyed by their IDs; images must already be stored
+     */
+    public List<ProductResponse> createProducts(Map<String, ProductRequest> requestsById) {
+        List<ProductResponse> created = new ArrayList<>(requestsById.size());
+        requestsById.forEach((productId, request) -> {
+            ProductResponse product = ProductResponse.builder()
+                    .id(productId)
+                    .name(request.getName())
+                    .sku(request.getSku())
+                    .color(request.getColor())
+                    .description(request.getDescription())
+                    .price(request.getPrice() != null ? BigDecimal.valueOf(request.getPrice()) : null)
+                    .category(request.getCategory())
+                    .imageUrl(request.getImageUrl())
+                    .sizes(request.getSizes())
+                    .colors(request.getColors())
+                    .createdAt(LocalDateTime.now())
+                    .updatedAt(LocalDateTime.now())
+                    .build();
+
+            created.add(product);
+        });
+        saveAll(created);
+
+        log.info("Created {} products in batch", created.size());
+        return created;
+    }
+
+    /**
+     * Get all products, latest first
      */
     public List<ProductResponse> getAllProducts() {
-        return products.values()
-                .stream()
-                .sorted((p1, p2) -> p2.getCreatedAt().compareTo(p1.getCreatedAt())) // Latest first
+        return List.copyOf(catalogIndex.all());
+    }
+
+    /**
+     * One page of products matching the filter, latest first
+     *
+     * @param cursor nextCursor of the previous page, or null for the first page
+     * @param limit page size, or null for catalog.page.default-size
+     * @throws IllegalArgumentException for a malformed cursor or a limit outside 1..catalog.page.max-size
+     */
+    public ProductCatalogIndex.Page findProducts(ProductCatalogIndex.Filter filter, String cursor, Integer limit) {
+        int pageSize = limit != null ? limit : defaultPageSize;
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxPageSize);
+        }
+        if (filter.minPrice() != null && filter.maxPrice() != null && filter.minPrice().compareTo(filter.maxPrice()) > 0) {
+            throw new IllegalArgumentException("minPrice must not exceed maxPrice");
+        }
+        return catalogIndex.query(filter, cursor, pageSize);
+    }
+
+    /**
+     * {@link #findProducts} as a serialized JSON array, rebuilt only after the catalog changes
+     *
+     * @throws IllegalArgumentException for a malformed cursor or an invalid limit or price range
+     */
+    public ProductResponseCache.CachedJson findProductsJson(ProductCatalogIndex.Filter filter, String cursor, Integer limit) {
+        // Read before the query so a page racing a write is cached under the older version
+        long version = catalogVersion.get();
+        int pageSize = limit != null ? limit : defaultPageSize;
+        ProductResponseCache.PageKey key = new ProductResponseCache.PageKey(filter, cursor, pageSize);
+        return responseCache.page(key, version, () -> findProducts(filter, cursor, pageSize));
+    }
+
+    /**
+     * Full-text search over name, description, category and colors, best match first
+     *
+     * @throws IllegalArgumentException for a blank or overlong query or a limit outside 1..catalog.search.max-results
+     */
+    public List<ProductResponse> searchProducts(String query, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query must not be empty");
+        }
+        if (query.length() > MAX_SEARCH_QUERY_LENGTH) {
+            throw new IllegalArgumentException("Search query exceeds " + MAX_SEARCH_QUERY_LENGTH + " characters");
+        }
+        int maxHits = limit != null ? limit : defaultSearchResults;
+        if (maxHits < 1 || maxHits > maxSearchResults) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxSearchResults);
+        }
+        return searchIndex.search(query, maxHits).stream()
+                .map(hit -> products.get(hit.productId()))
+                .filter(Objects::nonNull)
                 .toList();
     }
 
@@ -129,6 +260,37 @@ public class ProductService {
         return Optional.ofNullable(products.get(productId));
     }
 
+    /**
+     * A product as serialized JSON, prepared when the product was last written
+     */
+    public Optional<ProductResponseCache.CachedJson> getProductJson(String productId) {
+        return Optional.ofNullable(products.get(productId)).map(responseCache::product);
+    }
+
+    /**
+     * Local image file for a product
+     *
+     * Uploaded products are served from storage.products (imageUrl .../api/images/products/<file>);
+     * seeded catalog products reference the frontend's static images (imageUrl /products/<file>).
+     */
+    public Optional<Path> getProductImagePath(String productId) {
+        ProductResponse product = products.get(productId);
+        if (product == null || product.getImageUrl() == null) {
+            return Optional.empty();
+        }
+
+        String imageUrl = product.getImageUrl();
+        String filename = imageUrl.substring(imageUrl.lastIndexOf('/') + 1);
+        if (imageUrl.contains("/api/images/products/")) {
+            return Optional.of(imageStorageService.getImagePath("products", filename));
+        }
+        return Optional.of(Paths.get(catalogImagesDirectory, filename));
+    }
+
+    public int getProductCount() {
+        return products.size();
+    }
+
     /**
      * Check if a product exists
      */
@@ -140,38 +302,131 @@ public class ProductService {
      * Update product metadata (keeping the same image)
      */
     public Optional<ProductResponse> updateProduct(String productId, ProductRequest request) {
-        ProductResponse existingProduct = products.get(productId);
-        if (existingProduct == null) {
-            return Optional.empty();
-        }
+        writeLock.lock();
+        try {
+            ProductResponse existingProduct = products.get(productId);
+            if (existingProduct == null) {
+                return Optional.empty();
+            }
 
-        ProductResponse updatedProduct = ProductResponse.builder()
-                .id(existingProduct.getId())
-                .name(request.getName())
-                .sku(request.getSku())
-                .color(request.getColor())
-                .description(request.getDescription())
-                .imageUrl(existingProduct.getImageUrl())
-                .originalFilename(existingProduct.getOriginalFilename())
-                .createdAt(existingProduct.getCreatedAt())
-                .updatedAt(LocalDateTime.now())
-                .build();
+            ProductResponse updatedProduct = ProductResponse.builder()
+                    .id(existingProduct.getId())
+                    .name(request.getName())
+                    .sku(request.getSku())
+                    .color(request.getColor())
+                    .description(request.getDescription())
+                    .imageUrl(existingProduct.getImageUrl())
+                    .originalFilename(existingProduct.getOriginalFilename())
+                    .createdAt(existingProduct.getCreatedAt())
+                    .updatedAt(LocalDateTime.now())
+                    .build();
 
-        products.put(productId, updatedProduct);
-        log.info("Updated product: {}", productId);
-        return Optional.of(updatedProduct);
+            save(updatedProduct);
+            log.info("Updated product: {}", productId);
+            return Optional.of(updatedProduct);
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
      * Delete a product
      */
     public boolean deleteProduct(String productId) {
-        ProductResponse removed = products.remove(productId);
-        if (removed != null) {
-            log.info("Deleted product: {}", productId);
-            return true;
+        writeLock.lock();
+        try {
+            if (!products.containsKey(productId)) {
+                return false;
+            }
+            catalogStore.delete(productId);
+            products.remove(productId);
+            catalogIndex.remove(productId);
+            searchIndex.remove(productId);
+            responseCache.remove(productId);
+            productAssetCache.invalidate(productId);
+            productPromptCache.invalidate(productId);
+            catalogChanged();
+        } finally {
+            writeLock.unlock();
         }
-        return false;
+        log.info("Deleted product: {}", productId);
+        return true;
+    }
+
+    /**
+     * Fold the catalog log into a new snapshot once it has grown past catalog.store.checkpoint.min-records
+     */
+    @Scheduled(fixedDelayString = "${catalog.store.checkpoint.interval-ms:60000}")
+    public void checkpointCatalog() {
+        if (catalogStore.needsCheckpoint()) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Leave a snapshot with no log tail behind, so the next start only maps the snapshot
+     */
+    @PreDestroy
+    void checkpointOnShutdown() {
+        if (catalogStore.hasLoggedChanges()) {
+            checkpoint();
+        }
+    }
+
+    private void checkpoint() {
+        // Writes wait for the snapshot, so none can land between writing it and emptying the log
+        writeLock.lock();
+        try {
+            catalogStore.checkpoint(products.values());
+        } catch (IOException e) {
+            log.error("Catalog checkpoint failed: {}", e.getMessage(), e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Log a created or updated product, then publish it to the map, indexes and caches
+     */
+    private void save(ProductResponse product) {
+        writeLock.lock();
+        try {
+            saveAll(List.of(product));
+            // Products written one at a time are about to be tried on; imports are prepared on first use
+            productPromptCache.prepare(product);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void saveAll(List<ProductResponse> saved) {
+        writeLock.lock();
+        try {
+            catalogStore.putAll(saved);
+            for (ProductResponse product : saved) {
+                index(product);
+                responseCache.put(product);
+                productAssetCache.invalidate(product.getId());
+                productPromptCache.invalidate(product.getId());
+            }
+            catalogChanged();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void index(ProductResponse product) {
+        products.put(product.getId(), product);
+        catalogIndex.put(product);
+        searchIndex.put(product);
+    }
+
+    /**
+     * Publish a write to readers of cached listing pages; called after products and indexes are updated
+     */
+    private void catalogChanged() {
+        catalogVersion.incrementAndGet();
+        responseCache.invalidatePages();
     }
 
     /**
@@ -180,9 +435,10 @@ public class ProductService {
     public Map<String, Object> getProductStats() {
         return Map.of(
                 "totalProducts", products.size(),
-                "lastCreated", products.values().stream()
+                "catalogVersion", catalogVersion.get(),
+                "lastCreated", catalogIndex.all().stream()
+                        .findFirst()
                         .map(ProductResponse::getCreatedAt)
-                        .max(LocalDateTime::compareTo)
                         .orElse(null)
         );
     }
@@ -1,5 +1,6 @@
 package com.tryon.service;
 
+import com.tryon.dto.ProductResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
@@ -11,6 +12,58 @@ import org.springframework.stereotype.Component;
 @Slf4j
 public class PromptGeneratorService {
 
+    /**
+     * Choose the prompt for a catalog product from its category and description: the kids or
+     * formal-wear prompt when those match, otherwise the comprehensive prompt for the product's
+     * target demographic
+     */
+    public String generateProductPrompt(ProductResponse product) {
+        String category = product.getCategory() != null ? product.getCategory().toLowerCase() : "";
+        String description = product.getDescription() != null ? product.getDescription().toLowerCase() : "";
+
+        // Check for kids clothing
+        if (category.contains("kids") || category.contains("child") ||
+            description.contains("kids") || description.contains("children")) {
+            return generateKidsPrompt(product.getName(), product.getCategory());
+        }
+
+        // Check for formal wear
+        if (category.contains("formal") || category.contains("suit") || category.contains("dress shirt") ||
+            category.contains("blazer") || description.contains("formal") || description.contains("business")) {
+            return generateFormalWearPrompt(product.getName(), product.getCategory());
+        }
+
+        // For regular clothing, use the comprehensive prompt
+        String[] sizes = product.getSizes() != null ? product.getSizes().toArray(new String[0]) : new String[]{"M", "L"};
+        String[] colors = product.getColors() != null ? product.getColors().toArray(new String[0]) : new String[]{"Default"};
+
+        return generateVirtualTryOnPrompt(
+            product.getName(),
+            product.getCategory(),
+            product.getDescription(),
+            determineGender(category, description),
+            sizes,
+            colors
+        );
+    }
+
+    /**
+     * Determine gender from lower-cased product category and description
+     */
+    private String determineGender(String category, String description) {
+        String combined = category + " " + description;
+
+        if (combined.contains("women") || combined.contains("ladies") || combined.contains("female")) {
+            return "women";
+        } else if (combined.contains("men") || combined.contains("male") || combined.contains("gentleman")) {
+            return "men";
+        } else if (combined.contains("kids") || combined.contains("children") || combined.contains("child")) {
+            return "kids";
+        } else {
+            return "unisex";
+        }
+    }
+
     /**
      * Generate a comprehensive prompt for virtual try-on that works for all demographics
      * and clothing types. This prompt is designed to create realistic, natural-looking
@@ -0,0 +1,389 @@
+package com.tryon.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Backend for S3 and S3-compatible object stores such as MinIO (storage.backend.type=s3)
+ *
+ * Talks to the S3 REST API directly over the JDK HttpClient with AWS Signature Version 4, so no
+ * SDK is needed. Request bodies are streamed from the file and sent as UNSIGNED-PAYLOAD; files
+ * above storage.s3.multipart-threshold are uploaded as a multipart upload, one part at a time.
+ * Presigned GET URLs let clients download images straight from the bucket.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend.type", havingValue = "s3")
+@Slf4j
+public class S3BlobStorage implements BlobStorage {
+
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final DateTimeFormatter DATE_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final Pattern UPLOAD_ID = Pattern.compile("<UploadId>([^<]+)</UploadId>");
+    private static final HexFormat HEX = HexFormat.of();
+
+    @Value("${storage.s3.endpoint}")
+    private URI endpoint;
+
+    @Value("${storage.s3.region:us-east-1}")
+    private String region;
+
+    @Value("${storage.s3.bucket}")
+    private String bucket;
+
+    @Value("${storage.s3.access-key}")
+    private String accessKey;
+
+    @Value("${storage.s3.secret-key}")
+    private String secretKey;
+
+    // MinIO and most self-hosted stores need path-style URLs (endpoint/bucket/key)
+    @Value("${storage.s3.path-style:true}")
+    private boolean pathStyle;
+
+    @Value("${storage.s3.multipart-threshold:16777216}")
+    private long multipartThreshold;
+
+    @Value("${storage.s3.part-size:8388608}")
+    private int partSize;
+
+    @Value("${storage.s3.timeout:30s}")
+    private Duration timeout;
+
+    private HttpClient httpClient;
+
+    @PostConstruct
+    void init() {
+        if (partSize < 5 * 1024 * 1024) {
+            throw new IllegalStateException("storage.s3.part-size must be at least 5MB (S3 minimum part size)");
+        }
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+        log.info("S3 blob storage: endpoint={}, bucket={}, region={}, pathStyle={}", endpoint, bucket, region, pathStyle);
+    }
+
+    @Override
+    public void store(String key, Path source, String contentType) throws IOException {
+        long size = Files.size(source);
+        if (size <= multipartThreshold) {
+            HttpRequest.Builder request = signedRequest("PUT", key, Map.of())
+                    .header("Content-Type", contentType)
+                    .PUT(HttpRequest.BodyPublishers.ofFile(source));
+            expectSuccess(send(request, HttpResponse.BodyHandlers.ofString()), "PUT " + key);
+        } else {
+            storeMultipart(key, source, contentType, size);
+        }
+        log.debug("Stored {} in bucket {} ({} bytes)", key, bucket, size);
+    }
+
+    @Override
+    public boolean fetch(String key, Path target) throws IOException {
+        Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), ".fetch-", ".tmp");
+        try {
+            HttpResponse<Path> response = send(signedRequest("GET", key, Map.of()).GET(),
+                    HttpResponse.BodyHandlers.ofFile(temp));
+            if (response.statusCode() == 404) {
+                return false;
+            }
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException("GET " + key + " failed with HTTP " + response.statusCode());
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        HttpResponse<String> response = send(signedRequest("DELETE", key, Map.of()).DELETE(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 404) {
+            expectSuccess(response, "DELETE " + key);
+        }
+    }
+
+    @Override
+    public Optional<URI> presignedUrl(String key, Duration ttl) {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        String amzDate = AMZ_DATE.format(now);
+        String scope = DATE_STAMP.format(now) + "/" + region + "/s3/aws4_request";
+
+        TreeMap<String, String> query = new TreeMap<>();
+        query.put("X-Amz-Algorithm", "AWS4-HMAC-SHA256");
+        query.put("X-Amz-Credential", accessKey + "/" + scope);
+        query.put("X-Amz-Date", amzDate);
+        query.put("X-Amz-Expires", Long.toString(Math.min(ttl.toSeconds(), Duration.ofDays(7).toSeconds())));
+        query.put("X-Amz-SignedHeaders", "host");
+
+        URI uri = objectUri(key, query);
+        String canonicalRequest = "GET\n" + uri.getRawPath() + "\n" + uri.getRawQuery() + "\n"
+                + "host:" + hostHeader(uri) + "\n\nhost\n" + UNSIGNED_PAYLOAD;
+        String signature = sign(now, scope, amzDate, canonicalRequest);
+        return Optional.of(URI.create(uri + "&X-Amz-Signature=" + signature));
+    }
+
+    @Override
+    public boolean isRemote() {
+        return true;
+    }
+
+    /**
+     * Upload in parts; the file is read one part at a time, so memory use is bounded by the part size
+     */
+    private void storeMultipart(String key, Path source, String contentType, long size) throws IOException {
+        HttpResponse<String> initiated = send(signedRequest("POST", key, Map.of("uploads", ""))
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.noBody()), HttpResponse.BodyHandlers.ofString());
+        expectSuccess(initiated, "initiate multipart upload of " + key);
+        Matcher matcher = UPLOAD_ID.matcher(initiated.body());
+        if (!matcher.find()) {
+            throw new IOException("No UploadId in multipart upload response for " + key);
+        }
+        String uploadId = matcher.group(1);
+
+        try {
+            List<String> etags = new ArrayList<>();
+            for (long offset = 0; offset < size; offset += partSize) {
+                int partNumber = etags.size() + 1;
+                long length = Math.min(partSize, size - offset);
+                HttpRequest.Builder part = signedRequest("PUT", key,
+                        Map.of("partNumber", Integer.toString(partNumber), "uploadId", uploadId))
+                        .PUT(HttpRequest.BodyPublishers.fromPublisher(
+                                HttpRequest.BodyPublishers.ofInputStream(partStream(source, offset, length)), length));
+                HttpResponse<String> response = send(part, HttpResponse.BodyHandlers.ofString());
+                expectSuccess(response, "upload part " + partNumber + " of " + key);
+                etags.add(response.headers().firstValue("ETag")
+                        .orElseThrow(() -> new IOException("No ETag for part " + partNumber + " of " + key)));
+            }
+
+            StringBuilder manifest = new StringBuilder("<CompleteMultipartUpload>");
+            for (int i = 0; i < etags.size(); i++) {
+                manifest.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                        .append(etags.get(i)).append("</ETag></Part>");
+            }
+            manifest.append("</CompleteMultipartUpload>");
+            HttpResponse<String> completed = send(signedRequest("POST", key, Map.of("uploadId", uploadId))
+                    .header("Content-Type", "application/xml")
+                    .POST(HttpRequest.BodyPublishers.ofString(manifest.toString())), HttpResponse.BodyHandlers.ofString());
+            expectSuccess(completed, "complete multipart upload of " + key);
+            // S3 can report a failed completion with a 200 and an error document
+            if (completed.body().contains("<Error>")) {
+                throw new IOException("Multipart upload of " + key + " failed: " + completed.body());
+            }
+        } catch (IOException | RuntimeException e) {
+            abortMultipart(key, uploadId);
+            throw e;
+        }
+    }
+
+    private void abortMultipart(String key, String uploadId) {
+        try {
+            send(signedRequest("DELETE", key, Map.of("uploadId", uploadId)).DELETE(), HttpResponse.BodyHandlers.discarding());
+        } catch (IOException e) {
+            log.warn("Failed to abort multipart upload of {}: {}", key, e.getMessage());
+        }
+    }
+
+    private static Supplier<InputStream> partStream(Path source, long offset, long length) {
+        return () -> {
+            try {
+                FileChannel channel = FileChannel.open(source, StandardOpenOption.READ).position(offset);
+                InputStream in = Channels.newInputStream(channel);
+                return new InputStream() {
+                    private long remaining = length;
+
+                    @Override
+                    public int read() throws IOException {
+                        if (remaining <= 0) {
+                            return -1;
+                        }
+                        int value = in.read();
+                        if (value >= 0) {
+                            remaining--;
+                        }
+                        return value;
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int off, int len) throws IOException {
+                        if (remaining <= 0) {
+                            return -1;
+                        }
+                        int read = in.read(buffer, off, (int) Math.min(len, remaining));
+                        if (read > 0) {
+                            remaining -= read;
+                        }
+                        return read;
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        in.close();
+                    }
+                };
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    /**
+     * Request builder carrying a Signature Version 4 Authorization header
+     */
+    private HttpRequest.Builder signedRequest(String method, String key, Map<String, String> parameters) {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        String amzDate = AMZ_DATE.format(now);
+        String scope = DATE_STAMP.format(now) + "/" + region + "/s3/aws4_request";
+
+        URI uri = objectUri(key, new TreeMap<>(parameters));
+        String signedHeaders = "host;x-amz-content-sha256;x-amz-date";
+        String canonicalRequest = method + "\n"
+                + uri.getRawPath() + "\n"
+                + (uri.getRawQuery() != null ? uri.getRawQuery() : "") + "\n"
+                + "host:" + hostHeader(uri) + "\n"
+                + "x-amz-content-sha256:" + UNSIGNED_PAYLOAD + "\n"
+                + "x-amz-date:" + amzDate + "\n"
+                + "\n"
+                + signedHeaders + "\n"
+                + UNSIGNED_PAYLOAD;
+        String signature = sign(now, scope, amzDate, canonicalRequest);
+
+        return HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("x-amz-content-sha256", UNSIGNED_PAYLOAD)
+                .header("x-amz-date", amzDate)
+                .header("Authorization", "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope
+                        + ", SignedHeaders=" + signedHeaders + ", Signature=" + signature);
+    }
+
+    /**
+     * Object URL with a canonical (sorted, encoded) query string, so the URL sent is the one signed
+     */
+    private URI objectUri(String key, TreeMap<String, String> query) {
+        String base = endpoint.toString().replaceAll("/+$", "");
+        String path = "/" + encode(key, true);
+        String url;
+        if (pathStyle) {
+            url = base + "/" + encode(bucket, false) + path;
+        } else {
+            url = endpoint.getScheme() + "://" + bucket + "." + endpoint.getRawAuthority() + path;
+        }
+
+        if (!query.isEmpty()) {
+            StringBuilder queryString = new StringBuilder();
+            query.forEach((name, value) -> {
+                if (!queryString.isEmpty()) {
+                    queryString.append('&');
+                }
+                queryString.append(encode(name, false)).append('=').append(encode(value, false));
+            });
+            url += "?" + queryString;
+        }
+        return URI.create(url);
+    }
+
+    private String sign(ZonedDateTime now, String scope, String amzDate, String canonicalRequest) {
+        try {
+            String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n"
+                    + HEX.formatHex(MessageDigest.getInstance("SHA-256")
+                            .digest(canonicalRequest.getBytes(StandardCharsets.UTF_8)));
+
+            byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), DATE_STAMP.format(now));
+            signingKey = hmac(signingKey, region);
+            signingKey = hmac(signingKey, "s3");
+            signingKey = hmac(signingKey, "aws4_request");
+            return HEX.formatHex(hmac(signingKey, stringToSign));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign S3 request", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Host header value as the HttpClient sends it: the port is included only when non-default
+     */
+    private static String hostHeader(URI uri) {
+        int port = uri.getPort();
+        boolean defaultPort = port == -1
+                || ("http".equals(uri.getScheme()) && port == 80)
+                || ("https".equals(uri.getScheme()) && port == 443);
+        return defaultPort ? uri.getHost() : uri.getHost() + ":" + port;
+    }
+
+    /**
+     * RFC 3986 percent-encoding as SigV4 requires: only unreserved characters (and '/' in paths) stay literal
+     */
+    private static String encode(String value, boolean keepSlash) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (keepSlash && c == '/')) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(String.format("%02X", b & 0xFF));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest.Builder request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return httpClient.send(request.build(), handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted calling object storage");
+        }
+    }
+
+    private static void expectSuccess(HttpResponse<String> response, String operation) throws IOException {
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException(operation + " failed with HTTP " + response.statusCode() + ": " + response.body());
+        }
+    }
+}
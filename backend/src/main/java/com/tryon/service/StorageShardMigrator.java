@@ -0,0 +1,30 @@
+package com.tryon.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves user uploads and results from the flat directory layout into shard directories on startup
+ *
+ * Run once after upgrading with --storage.sharding.migrate=true. Images stay reachable while it
+ * runs, and it can be re-run safely: files already in a shard directory are not touched.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.sharding.migrate", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class StorageShardMigrator implements CommandLineRunner {
+
+    private final ImageStorageService imageStorageService;
+
+    @Override
+    public void run(String... args) throws Exception {
+        log.info("Migrating stored images to the sharded layout...");
+        long started = System.currentTimeMillis();
+        int moved = imageStorageService.migrateToShardedLayout();
+        log.info("Moved {} images into shard directories in {}ms", moved, System.currentTimeMillis() - started);
+    }
+}
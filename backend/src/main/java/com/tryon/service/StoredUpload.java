@@ -0,0 +1,13 @@
+package com.tryon.service;
+
+/**
+ * An uploaded image written to its final location
+ *
+ * @param path file the upload was stored at
+ * @param originalFilename filename sent by the client, may be null
+ * @param contentType MIME type sniffed from the file's content
+ * @param size bytes written
+ * @param sha256 hex SHA-256 of the content, computed while it was written
+ */
+public record StoredUpload(String path, String originalFilename, String contentType, long size, String sha256) {
+}
@@ -0,0 +1,27 @@
+package com.tryon.service;
+
+import com.tryon.dto.TryOnJobResponse;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Persisted try-on job: the public job state plus the inputs needed to (re)run it
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TryOnJobEntry {
+
+    private TryOnJobResponse job;
+
+    // Uploaded product image, null when the job uses a catalog product
+    private String productImagePath;
+
+    private String userImagePath;
+
+    // Content hash of the generation inputs: result cache key and single-flight coalescing key
+    private String inputKey;
+}
@@ -0,0 +1,170 @@
+package com.tryon.service;
+
+import com.tryon.error.TryOnQueueFullException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execution engine for try-on jobs
+ *
+ * Jobs run on a fixed-size worker pool fed by a bounded queue, so a slow Gemini round trip
+ * never holds the Tomcat request thread. When the queue is full, submissions are rejected
+ * with {@link TryOnQueueFullException} instead of piling up unbounded work.
+ *
+ * Two modes are supported (tryon.execution.mode):
+ * - platform: fixed pool of platform worker threads with a bounded queue (default)
+ * - virtual: one virtual thread per job, admission bounded by tryon.execution.max-in-flight
+ *   instead of a pool size, so thousands of jobs can block on Gemini concurrently; those beyond
+ *   gemini.http.max-concurrent-requests wait in {@link GeminiClientPool} for a request slot
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TryOnJobExecutor {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${tryon.execution.mode:platform}")
+    private String mode;
+
+    @Value("${tryon.execution.workers:8}")
+    private int workers;
+
+    @Value("${tryon.execution.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${tryon.execution.max-in-flight:5000}")
+    private int maxInFlight;
+
+    @Value("${tryon.execution.retry-after-seconds:15}")
+    private int retryAfterSeconds;
+
+    @Value("${tryon.execution.shutdown-timeout-seconds:30}")
+    private int shutdownTimeoutSeconds;
+
+    // Platform mode: bounded pool. Virtual mode: thread per task gated by inFlightPermits.
+    private ThreadPoolExecutor pool;
+    private ExecutorService virtualExecutor;
+    private Semaphore inFlightPermits;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    void start() {
+        if (isVirtual()) {
+            ThreadFactory factory = Thread.ofVirtual().name("tryon-job-", 0).factory();
+            virtualExecutor = Executors.newThreadPerTaskExecutor(factory);
+            inFlightPermits = new Semaphore(maxInFlight);
+            log.info("Try-on job executor started: mode=virtual, maxInFlight={}", maxInFlight);
+        } else {
+            ThreadFactory factory = Thread.ofPlatform().name("tryon-job-", 0).daemon(false).factory();
+            pool = new ThreadPoolExecutor(
+                    workers, workers,
+                    0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    factory,
+                    new ThreadPoolExecutor.AbortPolicy());
+            log.info("Try-on job executor started: mode=platform, workers={}, queueCapacity={}", workers, queueCapacity);
+        }
+
+        Gauge.builder("tryon.jobs.queue.depth", this, TryOnJobExecutor::getQueueDepth)
+                .description("Try-on jobs waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("tryon.jobs.active", this, TryOnJobExecutor::getActiveCount)
+                .description("Try-on jobs currently being processed")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("tryon.jobs.rejected")
+                .description("Try-on jobs rejected because the queue was full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Fail fast before any upload is written to disk when the queue is already full
+     */
+    public void checkCapacity() {
+        boolean full = isVirtual()
+                ? inFlightPermits.availablePermits() == 0
+                : pool.getQueue().remainingCapacity() == 0;
+        if (full) {
+            throw reject();
+        }
+    }
+
+    /**
+     * Queue a job for processing, rejecting it when the queue is full
+     */
+    public void submit(String jobId, Runnable task) {
+        if (isVirtual()) {
+            submitVirtual(jobId, task);
+            return;
+        }
+        try {
+            pool.execute(task);
+            log.debug("Queued job {} (queue depth: {})", jobId, pool.getQueue().size());
+        } catch (RejectedExecutionException e) {
+            throw reject();
+        }
+    }
+
+    private void submitVirtual(String jobId, Runnable task) {
+        if (!inFlightPermits.tryAcquire()) {
+            throw reject();
+        }
+        try {
+            virtualExecutor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    inFlightPermits.release();
+                }
+            });
+            log.debug("Started virtual thread for job {} ({} in flight)", jobId, getActiveCount());
+        } catch (RejectedExecutionException e) {
+            inFlightPermits.release();
+            throw reject();
+        }
+    }
+
+    public boolean isVirtual() {
+        return "virtual".equalsIgnoreCase(mode);
+    }
+
+    public int getQueueDepth() {
+        return isVirtual() ? 0 : pool.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return isVirtual() ? maxInFlight - inFlightPermits.availablePermits() : pool.getActiveCount();
+    }
+
+    private TryOnQueueFullException reject() {
+        rejectedCounter.increment();
+        log.warn("Rejecting try-on job: queue full ({} queued, {} running)", getQueueDepth(), getActiveCount());
+        return new TryOnQueueFullException("Try-on queue is full, please retry later", retryAfterSeconds);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        log.info("Shutting down try-on job executor ({} queued, {} running)", getQueueDepth(), getActiveCount());
+        ExecutorService executor = isVirtual() ? virtualExecutor : pool;
+        executor.shutdown();
+        if (!executor.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+}
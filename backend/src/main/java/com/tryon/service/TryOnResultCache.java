@@ -0,0 +1,340 @@
+package com.tryon.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of generated try-on results
+ *
+ * Keyed by SHA-256 over (product image bytes, user image bytes, prompt, model URL), so a
+ * re-submitted photo/product pair is answered without calling Gemini again.
+ *
+ * Two tiers:
+ * - memory: LRU map of recently used keys to their cached file, bounded by entry count
+ * - disk: one file per key under tryon.result-cache.directory, bounded by total bytes;
+ *   a sweep deletes least recently used files. Cached files are hard links to stored results
+ *   (shared content-addressed blobs), so recency is tracked in memory rather than by touching
+ *   them: changing their mtime would change Last-Modified, ETags and derived-image cache keys.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TryOnResultCache {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    // Extensions ImageStorageService.extensionForMimeType can produce
+    private static final List<String> RESULT_EXTENSIONS = List.of("jpg", "png", "webp");
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${tryon.result-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${tryon.result-cache.directory:./storage/cache/results}")
+    private String cacheDirectory;
+
+    @Value("${tryon.result-cache.max-disk-bytes:1073741824}")
+    private long maxDiskBytes;
+
+    @Value("${tryon.result-cache.max-memory-entries:10000}")
+    private int maxMemoryEntries;
+
+    @Value("${gemini.api-url}")
+    private String modelUrl;
+
+    private final ReentrantLock memoryLock = new ReentrantLock();
+    private final AtomicLong diskBytes = new AtomicLong();
+
+    // Access-ordered: iteration starts at the least recently used key
+    private final LinkedHashMap<String, Path> memoryTier = new LinkedHashMap<>(256, 0.75f, true);
+
+    // Last hit or insert per cached file, epoch millis; files not used since startup fall back to their mtime
+    private final Map<Path, Long> lastAccess = new ConcurrentHashMap<>();
+
+    // Product images are hashed once per (path, size, mtime) rather than on every job
+    private final LinkedHashMap<String, String> fileDigests = new LinkedHashMap<>(256, 0.75f, true);
+
+    private Counter hitCounter;
+    private Counter missCounter;
+
+    @PostConstruct
+    void init() throws IOException {
+        hitCounter = meterRegistry.counter("tryon.result-cache.requests", "result", "hit");
+        missCounter = meterRegistry.counter("tryon.result-cache.requests", "result", "miss");
+        Gauge.builder("tryon.result-cache.disk.bytes", diskBytes, AtomicLong::get)
+                .description("Bytes held by the try-on result cache on disk")
+                .register(meterRegistry);
+        Gauge.builder("tryon.result-cache.memory.entries", memoryTier, Map::size)
+                .description("Keys held in the in-memory tier of the try-on result cache")
+                .register(meterRegistry);
+
+        if (enabled) {
+            Path dir = Paths.get(cacheDirectory);
+            Files.createDirectories(dir);
+            try (Stream<Path> files = Files.list(dir)) {
+                diskBytes.set(files.mapToLong(this::sizeOf).sum());
+            }
+            log.info("Try-on result cache at {}: {} bytes on disk", dir, diskBytes.get());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Cache key for a generation request
+     */
+    public String computeKey(String productImagePath, String userImagePath, String prompt) throws IOException {
+        return keyForDigests(digestOf(productImagePath), digestOf(userImagePath), prompt);
+    }
+
+    /**
+     * Cache key for a generation request whose image digests are already known,
+     * e.g. computed while the uploads were being stored
+     */
+    public String keyForDigests(String productImageDigest, String userImageDigest, String prompt) {
+        MessageDigest digest = sha256();
+        digest.update(modelUrl.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update((prompt != null ? prompt : "").getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(HEX.parseHex(productImageDigest));
+        digest.update(HEX.parseHex(userImageDigest));
+        return HEX.formatHex(digest.digest());
+    }
+
+    /**
+     * Hex SHA-256 of an image file, remembered by path and version
+     */
+    public String digestOf(String imagePath) throws IOException {
+        return fileDigest(Paths.get(imagePath));
+    }
+
+    /**
+     * Look up a cached result file, recording a hit or miss
+     */
+    public Optional<Path> lookup(String key) {
+        Path cached;
+        memoryLock.lock();
+        try {
+            cached = memoryTier.get(key);
+        } finally {
+            memoryLock.unlock();
+        }
+
+        if (cached == null) {
+            cached = findOnDisk(key);
+        }
+        if (cached == null || !Files.exists(cached)) {
+            missCounter.increment();
+            return Optional.empty();
+        }
+
+        touch(cached);
+        remember(key, cached);
+        hitCounter.increment();
+        return Optional.of(cached);
+    }
+
+    /**
+     * Add a generated result to the cache. The result file is hard-linked when possible.
+     */
+    public void put(String key, Path resultFile) {
+        String filename = resultFile.getFileName().toString();
+        String extension = filename.substring(filename.lastIndexOf('.') + 1);
+        Path cached = Paths.get(cacheDirectory, key + "." + extension);
+
+        try {
+            if (Files.exists(cached)) {
+                return;
+            }
+            Path temp = Files.createTempFile(Paths.get(cacheDirectory), "." + key, ".tmp");
+            Files.delete(temp);
+            try {
+                Files.createLink(temp, resultFile);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(resultFile, temp);
+            }
+            Files.move(temp, cached, StandardCopyOption.ATOMIC_MOVE);
+            diskBytes.addAndGet(sizeOf(cached));
+            touch(cached);
+            remember(key, cached);
+            log.debug("Cached try-on result {} -> {}", key, cached);
+        } catch (IOException e) {
+            log.warn("Failed to cache try-on result {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Delete least recently used files once the disk tier exceeds its byte budget
+     */
+    @Scheduled(fixedDelayString = "${tryon.result-cache.sweep-interval-ms:60000}")
+    public void sweep() {
+        if (!enabled || diskBytes.get() <= maxDiskBytes) {
+            return;
+        }
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(Paths.get(cacheDirectory))) {
+            files = listing
+                    .filter(path -> !path.getFileName().toString().startsWith("."))
+                    .sorted(Comparator.comparingLong(this::lastUsed))
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Failed to sweep try-on result cache: {}", e.getMessage());
+            return;
+        }
+
+        int evicted = 0;
+        for (Path file : files) {
+            if (diskBytes.get() <= maxDiskBytes) {
+                break;
+            }
+            long size = sizeOf(file);
+            try {
+                if (Files.deleteIfExists(file)) {
+                    diskBytes.addAndGet(-size);
+                    lastAccess.remove(file);
+                    forget(file);
+                    evicted++;
+                }
+            } catch (IOException e) {
+                log.warn("Failed to evict cached result {}: {}", file, e.getMessage());
+            }
+        }
+        meterRegistry.counter("tryon.result-cache.evictions").increment(evicted);
+        log.info("Evicted {} cached try-on results, {} bytes remain", evicted, diskBytes.get());
+    }
+
+    private Path findOnDisk(String key) {
+        for (String extension : RESULT_EXTENSIONS) {
+            Path candidate = Paths.get(cacheDirectory, key + "." + extension);
+            if (Files.exists(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void remember(String key, Path cached) {
+        memoryLock.lock();
+        try {
+            memoryTier.put(key, cached);
+            while (memoryTier.size() > maxMemoryEntries) {
+                var eldest = memoryTier.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        } finally {
+            memoryLock.unlock();
+        }
+    }
+
+    private void forget(Path cached) {
+        memoryLock.lock();
+        try {
+            memoryTier.values().remove(cached);
+        } finally {
+            memoryLock.unlock();
+        }
+    }
+
+    private String fileDigest(Path file) throws IOException {
+        String cacheKey = file.toAbsolutePath().normalize() + ":" + Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis();
+        String cached;
+        memoryLock.lock();
+        try {
+            cached = fileDigests.get(cacheKey);
+        } finally {
+            memoryLock.unlock();
+        }
+        if (cached != null) {
+            return cached;
+        }
+
+        MessageDigest digest = sha256();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        String hex = HEX.formatHex(digest.digest());
+
+        // Bounded LRU: one-off uploads age out while catalog images used by every job stay
+        memoryLock.lock();
+        try {
+            fileDigests.put(cacheKey, hex);
+            while (fileDigests.size() > maxMemoryEntries) {
+                var eldest = fileDigests.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        } finally {
+            memoryLock.unlock();
+        }
+        return hex;
+    }
+
+    private void touch(Path file) {
+        lastAccess.put(file, System.currentTimeMillis());
+    }
+
+    private long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private long lastUsed(Path file) {
+        Long accessed = lastAccess.get(file);
+        if (accessed != null) {
+            return accessed;
+        }
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
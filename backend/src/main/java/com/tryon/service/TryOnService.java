@@ -2,29 +2,37 @@ package com.tryon.service;
 
 import com.tryon.dto.ProductResponse;
 import com.tryon.dto.TryOnJobResponse;
+import com.tryon.error.TryOnQueueFullException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
 /**
  * Service for managing virtual try-on processing jobs using Gemini API
  *
  * This service handles:
- * - Async job submission to Gemini API for virtual try-on
- * - Job state management (QUEUED -> RUNNING -> SUCCEEDED/FAILED)
+ * - Async job submission to Gemini API for virtual try-on via {@link TryOnJobExecutor}
+ * - Job state management (QUEUED -> RUNNING -> SUCCEEDED/FAILED) persisted through {@link JobStore}
+ * - Recovery of queued/interrupted jobs after a restart
+ * - Result reuse: identical inputs are served from {@link TryOnResultCache} or coalesced onto
+ *   an identical in-flight generation via {@link InFlightGenerations}
  * - Integration with PromptGeneratorService for optimized prompts
- * - Automatic prompt generation based on product details
+ * - Automatic prompts for catalog products, prepared at product write time by {@link ProductPromptCache}
  */
 @Service
 @RequiredArgsConstructor
@@ -35,18 +43,27 @@ public class TryOnService {
     private final ProductService productService;
     private final GeminiImageService geminiImageService;
     private final PromptGeneratorService promptGeneratorService;
+    private final TryOnJobExecutor jobExecutor;
+    private final JobStore jobStore;
+    private final TryOnResultCache resultCache;
+    private final InFlightGenerations inFlightGenerations;
+    private final JobEventBroadcaster jobEventBroadcaster;
+    private final ImageNormalizationService imageNormalizationService;
+    private final ProductAssetCache productAssetCache;
+    private final ProductPromptCache productPromptCache;
 
     @Value("${tryon.service.timeout}")
     private int timeoutSeconds;
 
-    // In-memory job storage for prototype - replace with database in production
-    private final Map<String, TryOnJobResponse> jobs = new ConcurrentHashMap<>();
+    // Auto-generated prompts are several KB each; completed jobs drop them unless configured otherwise
+    @Value("${tryon.jobs.retain-completed-prompts:false}")
+    private boolean retainCompletedPrompts;
 
     /**
      * Submit a try-on job with product ID and user image (NEW SIMPLIFIED FLOW)
      * No user prompt required - automatically generates optimal prompt
      */
-    public TryOnJobResponse submitTryOnJob(String productId, MultipartFile userImage) throws IOException {
+    public TryOnJobResponse submitTryOnJob(String productId, StoredUpload userImage) {
         log.info("Starting try-on job for product: {}", productId);
         
         // Validate that product exists
@@ -57,9 +74,9 @@ public class TryOnService {
 
         ProductResponse product = productOpt.get();
         
-        // Generate automatic prompt based on product details
-        String autoPrompt = generateAutoPrompt(product);
-        log.info("Generated automatic prompt for product {}: {}", productId, autoPrompt);
+        // Prompt prepared when the product was written
+        String autoPrompt = productPromptCache.promptFor(product);
+        log.debug("Using prepared prompt for product {} ({} chars)", productId, autoPrompt.length());
 
         return createAndProcessJob(productId, null, userImage, autoPrompt);
     }
@@ -67,7 +84,7 @@ public class TryOnService {
     /**
      * Submit a try-on job with new product image and user image
      */
-    public TryOnJobResponse submitTryOnJob(MultipartFile productImage, MultipartFile userImage, String productName, String category) throws IOException {
+    public TryOnJobResponse submitTryOnJob(StoredUpload productImage, StoredUpload userImage, String productName, String category) {
         log.info("Starting try-on job with uploaded product image: {}", productName);
         
         // Generate prompt for uploaded product
@@ -77,100 +94,85 @@ public class TryOnService {
         return createAndProcessJob(null, productImage, userImage, autoPrompt);
     }
 
+    /**
+     * Reject a submission before its uploads are read when there is no room in the queue
+     *
+     * With the result cache enabled the uploads are read anyway: a submission whose result is
+     * already cached completes without a queue slot, so only a miss is rejected, at dispatch.
+     *
+     * @throws TryOnQueueFullException if the queue is full
+     */
+    public void checkCapacity() {
+        if (!resultCache.isEnabled()) {
+            jobExecutor.checkCapacity();
+        }
+    }
+
     /**
      * Get job status and result
      */
     public TryOnJobResponse getJobStatus(String jobId) {
-        TryOnJobResponse job = jobs.get(jobId);
-        if (job == null) {
-            throw new IllegalArgumentException("Job not found: " + jobId);
-        }
-        return job;
+        return jobStore.findById(jobId)
+                .map(TryOnJobEntry::getJob)
+                .orElseThrow(() -> new IllegalArgumentException("Job not found: " + jobId));
     }
 
     /**
      * Get all jobs (for monitoring/debugging)
      */
     public Map<String, TryOnJobResponse> getAllJobs() {
-        return Map.copyOf(jobs);
+        return jobStore.findAll().stream()
+                .map(TryOnJobEntry::getJob)
+                .collect(Collectors.toMap(TryOnJobResponse::getJobId, job -> job));
     }
 
     /**
-     * Generate automatic prompt based on product details
+     * Resume work persisted by a previous run: QUEUED jobs are re-enqueued, RUNNING jobs were
+     * interrupted mid-generation and are marked FAILED so clients stop waiting on them
      */
-    private String generateAutoPrompt(ProductResponse product) {
-        // Determine if this is kids, formal wear, or regular clothing
-        String category = product.getCategory().toLowerCase();
-        String description = product.getDescription() != null ? product.getDescription().toLowerCase() : "";
-        
-        // Check for kids clothing
-        if (category.contains("kids") || category.contains("child") || 
-            description.contains("kids") || description.contains("children")) {
-            return promptGeneratorService.generateKidsPrompt(product.getName(), product.getCategory());
-        }
-        
-        // Check for formal wear
-        if (category.contains("formal") || category.contains("suit") || category.contains("dress shirt") ||
-            category.contains("blazer") || description.contains("formal") || description.contains("business")) {
-            return promptGeneratorService.generateFormalWearPrompt(product.getName(), product.getCategory());
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverJobs() {
+        int requeued = 0;
+        int interrupted = 0;
+
+        for (TryOnJobEntry entry : jobStore.findAll()) {
+            String jobId = entry.getJob().getJobId();
+            switch (entry.getJob().getStatus()) {
+                case QUEUED -> {
+                    try {
+                        dispatch(jobId, entry.getInputKey());
+                        requeued++;
+                    } catch (TryOnQueueFullException e) {
+                        updateJobStatus(jobId, TryOnJobResponse.JobStatus.FAILED, null,
+                                "Job could not be re-queued after restart: queue full");
+                    }
+                }
+                case RUNNING -> {
+                    updateJobStatus(jobId, TryOnJobResponse.JobStatus.FAILED, null,
+                            "Job interrupted by server restart");
+                    interrupted++;
+                }
+                default -> { }
+            }
         }
-        
-        // For regular clothing, use the comprehensive prompt
-        String[] sizes = product.getSizes() != null ? product.getSizes().toArray(new String[0]) : new String[]{"M", "L"};
-        String[] colors = product.getColors() != null ? product.getColors().toArray(new String[0]) : new String[]{"Default"};
-        
-        // Determine gender from category or use unisex
-        String gender = determineGender(product.getCategory(), product.getDescription());
-        
-        return promptGeneratorService.generateVirtualTryOnPrompt(
-            product.getName(), 
-            product.getCategory(), 
-            product.getDescription(), 
-            gender, 
-            sizes, 
-            colors
-        );
-    }
 
-    /**
-     * Determine gender from product category and description
-     */
-    private String determineGender(String category, String description) {
-        if (category == null) category = "";
-        if (description == null) description = "";
-        
-        String combined = (category + " " + description).toLowerCase();
-        
-        if (combined.contains("women") || combined.contains("ladies") || combined.contains("female")) {
-            return "women";
-        } else if (combined.contains("men") || combined.contains("male") || combined.contains("gentleman")) {
-            return "men";
-        } else if (combined.contains("kids") || combined.contains("children") || combined.contains("child")) {
-            return "kids";
-        } else {
-            return "unisex";
+        if (requeued > 0 || interrupted > 0) {
+            log.info("Recovered jobs after restart: {} re-queued, {} marked as interrupted", requeued, interrupted);
         }
     }
 
     /**
      * Create job and start async processing
      */
-    private TryOnJobResponse createAndProcessJob(String productId, MultipartFile productImage,
-                                               MultipartFile userImage, String prompt) throws IOException {
+    private TryOnJobResponse createAndProcessJob(String productId, StoredUpload productImage,
+                                               StoredUpload userImage, String prompt) {
         String jobId = "job-" + UUID.randomUUID().toString();
 
         log.info("Creating try-on job {} for product: {}", jobId, productId != null ? productId : "uploaded");
 
-        // Store user image
-        String userImagePath = imageStorageService.storeUserImage(userImage);
-        log.info("Stored user image for job {}: {}", jobId, userImagePath);
-
-        // Store product image if provided
-        String productImagePath = null;
-        if (productImage != null) {
-            productImagePath = imageStorageService.storeProductImage(productImage, jobId);
-            log.info("Stored product image for job {}: {}", jobId, productImagePath);
-        }
+        // Uploads were already stored by the controller while the request body streamed in
+        String userImagePath = userImage.path();
+        String productImagePath = productImage != null ? productImage.path() : null;
 
         // Create initial job response
         TryOnJobResponse job = TryOnJobResponse.builder()
@@ -182,21 +184,149 @@ public class TryOnService {
                 .estimatedProcessingTimeSeconds(timeoutSeconds)
                 .build();
 
-        jobs.put(jobId, job);
+        String inputKey = computeInputKey(productId, productImage, userImage, prompt);
+
+        jobStore.save(TryOnJobEntry.builder()
+                .job(job)
+                .productImagePath(productImagePath)
+                .userImagePath(userImagePath)
+                .inputKey(inputKey)
+                .build());
         log.info("Created try-on job: {} with status: {}", jobId, job.getStatus());
 
-        // Start async processing
-        processJobAsync(jobId, productId, productImagePath, userImagePath, prompt);
+        // Identical inputs already generated: succeed now instead of taking a worker or queue slot
+        if (completeFromCache(jobId, inputKey)) {
+            return getJobStatus(jobId);
+        }
+
+        // Hand off to the worker pool - the request thread returns immediately
+        try {
+            dispatch(jobId, inputKey);
+        } catch (TryOnQueueFullException e) {
+            // The caller owns the uploads and discards them
+            jobStore.remove(jobId);
+            throw e;
+        }
 
         return job;
     }
 
     /**
-     * Async job processing - calls Gemini API for virtual try-on
+     * Publish a cached result for a new job and mark it SUCCEEDED
+     *
+     * @return false on a miss (or if the cached result cannot be linked), leaving the job QUEUED
+     */
+    private boolean completeFromCache(String jobId, String inputKey) {
+        if (inputKey == null || !resultCache.isEnabled()) {
+            return false;
+        }
+        Optional<Path> cachedResult = resultCache.lookup(inputKey);
+        if (cachedResult.isEmpty()) {
+            return false;
+        }
+        try {
+            String resultImagePath = imageStorageService.linkResultImage(cachedResult.get(), jobId);
+            updateJobStatus(jobId, TryOnJobResponse.JobStatus.SUCCEEDED,
+                    imageStorageService.generatePublicUrl(resultImagePath, "results"), null);
+            log.info("Result cache hit for job {} at submission", jobId);
+            return true;
+        } catch (IOException e) {
+            log.warn("Could not reuse cached result for job {}, generating instead: {}", jobId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Start a job, or attach it to an identical generation that is already in flight
+     */
+    private void dispatch(String jobId, String inputKey) {
+        CompletableFuture<String> leaderResult = inputKey != null ? inFlightGenerations.join(inputKey) : null;
+        if (leaderResult != null) {
+            log.info("Job {} coalesced with an identical in-flight generation", jobId);
+            leaderResult.whenComplete((resultImagePath, error) -> completeFollower(jobId, resultImagePath, error));
+            return;
+        }
+
+        try {
+            jobExecutor.submit(jobId, () -> processJob(jobId, inputKey));
+        } catch (TryOnQueueFullException e) {
+            if (inputKey != null) {
+                inFlightGenerations.fail(inputKey, e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Resolve a coalesced job from its leader's outcome
      */
-    @Async
-    public CompletableFuture<Void> processJobAsync(String jobId, String productId, String productImagePath,
-                                                   String userImagePath, String prompt) {
+    private void completeFollower(String jobId, String leaderResultPath, Throwable error) {
+        if (error != null) {
+            updateJobStatus(jobId, TryOnJobResponse.JobStatus.FAILED, null, rootMessage(error));
+            return;
+        }
+        try {
+            String resultImagePath = imageStorageService.linkResultImage(Paths.get(leaderResultPath), jobId);
+            String resultImageUrl = imageStorageService.generatePublicUrl(resultImagePath, "results");
+            updateJobStatus(jobId, TryOnJobResponse.JobStatus.SUCCEEDED, resultImageUrl, null);
+        } catch (IOException e) {
+            log.error("Failed to publish coalesced result for job {}: {}", jobId, e.getMessage(), e);
+            updateJobStatus(jobId, TryOnJobResponse.JobStatus.FAILED, null, e.getMessage());
+        }
+    }
+
+    /**
+     * Content hash of the generation inputs, or null when the product image cannot be resolved yet
+     *
+     * Uploads carry the digest computed while they were stored, so only a catalog image is hashed here
+     * (and that digest is remembered across jobs).
+     */
+    private String computeInputKey(String productId, StoredUpload productImage, StoredUpload userImage, String prompt) {
+        try {
+            String productDigest;
+            if (productImage != null) {
+                productDigest = productImage.sha256();
+            } else {
+                String catalogImagePath = getProductImagePath(productId, null);
+                if (catalogImagePath == null) {
+                    return null;
+                }
+                productDigest = resultCache.digestOf(catalogImagePath);
+            }
+            return resultCache.keyForDigests(productDigest, userImage.sha256(), prompt);
+        } catch (IOException e) {
+            log.warn("Could not hash inputs for {}: {}", userImage.path(), e.getMessage());
+            return null;
+        }
+    }
+
+    private String rootMessage(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause.getMessage();
+    }
+
+    /**
+     * Job processing - calls Gemini API for virtual try-on on a worker thread
+     *
+     * @param flightKey key this job leads in {@link InFlightGenerations}, or null if it leads none
+     */
+    private void processJob(String jobId, String flightKey) {
+        TryOnJobEntry entry = jobStore.findById(jobId).orElse(null);
+        if (entry == null) {
+            log.warn("Job {} no longer exists, skipping", jobId);
+            if (flightKey != null) {
+                inFlightGenerations.fail(flightKey, new IllegalStateException("Job " + jobId + " no longer exists"));
+            }
+            return;
+        }
+        String productId = entry.getJob().getSourceProductId();
+        // Jobs persisted before the storage directories were sharded may record pre-migration paths
+        String productImagePath = entry.getProductImagePath() != null
+                ? imageStorageService.locateImage(entry.getProductImagePath()).toString() : null;
+        String userImagePath = imageStorageService.locateImage(entry.getUserImagePath()).toString();
+        String prompt = entry.getJob().getPrompt();
+        String inputKey = entry.getInputKey();
+
         try {
             log.info("Starting async processing for job: {}", jobId);
             
@@ -213,28 +343,78 @@ public class TryOnService {
             log.info("Processing try-on with Gemini API - Job: {}, Product Image: {}, User Image: {}", 
                     jobId, finalProductImagePath, userImagePath);
 
-            // Call Gemini API for virtual try-on
-            byte[] resultImageData = geminiImageService.generateVirtualTryOnImage(
-                finalProductImagePath, 
-                userImagePath, 
-                prompt
-            );
-
-            // Store result image
-            String resultImagePath = imageStorageService.storeResultImage(resultImageData, jobId, "jpg");
+            // Identical inputs already generated - reuse the stored result instead of calling Gemini
+            if (inputKey == null) {
+                inputKey = resultCache.computeKey(finalProductImagePath, userImagePath, prompt);
+            }
+            Optional<Path> cachedResult = resultCache.isEnabled() ? resultCache.lookup(inputKey) : Optional.empty();
+
+            String resultImagePath;
+            if (cachedResult.isPresent()) {
+                log.info("Result cache hit for job {}", jobId);
+                resultImagePath = imageStorageService.linkResultImage(cachedResult.get(), jobId);
+            } else {
+                resultImagePath = generateResult(jobId, productImagePath == null ? productId : null,
+                        finalProductImagePath, userImagePath, prompt);
+                if (resultCache.isEnabled()) {
+                    resultCache.put(inputKey, Paths.get(resultImagePath));
+                }
+            }
             String resultImageUrl = imageStorageService.generatePublicUrl(resultImagePath, "results");
 
             log.info("Try-on processing completed for job: {}, result URL: {}", jobId, resultImageUrl);
 
-            // Update job status to SUCCEEDED
+            // Update job status to SUCCEEDED and release coalesced followers
             updateJobStatus(jobId, TryOnJobResponse.JobStatus.SUCCEEDED, resultImageUrl, null);
+            if (flightKey != null) {
+                inFlightGenerations.complete(flightKey, resultImagePath);
+            }
 
         } catch (Exception e) {
             log.error("Failed to process try-on job: {} - {}", jobId, e.getMessage(), e);
             updateJobStatus(jobId, TryOnJobResponse.JobStatus.FAILED, null, e.getMessage());
+            if (flightKey != null) {
+                inFlightGenerations.fail(flightKey, e);
+            }
         }
+    }
 
-        return CompletableFuture.completedFuture(null);
+    /**
+     * Call Gemini for a job and store the generated image, returning the result file path
+     */
+    private String generateResult(String jobId, String catalogProductId, String productImagePath,
+                                  String userImagePath, String prompt) throws IOException {
+        // Downscaled, metadata-free copies are uploaded. Catalog products come pre-encoded from
+        // the asset cache; a per-job product upload is normalized like the user image.
+        ImageNormalizationService.NormalizedImage productImage = null;
+        ImageNormalizationService.NormalizedImage userImage = null;
+
+        // The image is streamed into a temp result file and renamed into place
+        Path tempResult = imageStorageService.createResultTempFile(jobId);
+        try {
+            GeminiRequestWriter.ImagePart productPart;
+            if (catalogProductId != null) {
+                productPart = productAssetCache.getImagePart(catalogProductId, Paths.get(productImagePath));
+            } else {
+                productImage = imageNormalizationService.normalize(Paths.get(productImagePath));
+                productPart = GeminiRequestWriter.fromFile(productImage.path(), productImage.mimeType());
+            }
+            userImage = imageNormalizationService.normalize(Paths.get(userImagePath));
+
+            String mimeType = geminiImageService.generateVirtualTryOnImage(
+                productPart,
+                GeminiRequestWriter.fromFile(userImage.path(), userImage.mimeType()),
+                prompt,
+                tempResult
+            );
+
+            return imageStorageService.storeResultImage(
+                tempResult, jobId, imageStorageService.extensionForMimeType(mimeType));
+        } finally {
+            Files.deleteIfExists(tempResult);
+            imageNormalizationService.release(productImage);
+            imageNormalizationService.release(userImage);
+        }
     }
 
     /**
@@ -244,46 +424,44 @@ public class TryOnService {
         if (productImagePath != null) {
             return productImagePath;
         }
-        
-        if (productId != null) {
-            Optional<ProductResponse> productOpt = productService.getProductById(productId);
-            if (productOpt.isPresent()) {
-                String imageUrl = productOpt.get().getImageUrl();
-                String filename = imageUrl.substring(imageUrl.lastIndexOf('/') + 1);
-                
-                // Product images are now stored in frontend/public/products/
-                // Use absolute path to frontend directory
-                String frontendProductsPath = "../frontend/public/products/" + filename;
-                
-                log.debug("Product image path for ID {}: {}", productId, frontendProductsPath);
-                return frontendProductsPath;
-            }
+        if (productId == null) {
+            return null;
         }
-        
-        return null;
+
+        String path = productService.getProductImagePath(productId).map(Path::toString).orElse(null);
+        log.debug("Product image path for ID {}: {}", productId, path);
+        return path;
     }
 
     /**
-     * Update job status in memory
+     * Update job status in the job store
      */
     private void updateJobStatus(String jobId, TryOnJobResponse.JobStatus status, String resultImageUrl, String errorMessage) {
-        TryOnJobResponse job = jobs.get(jobId);
-        if (job != null) {
+        TryOnJobEntry entry = jobStore.findById(jobId).orElse(null);
+        if (entry != null) {
+            TryOnJobResponse job = entry.getJob();
+            boolean terminal = status == TryOnJobResponse.JobStatus.SUCCEEDED ||
+                               status == TryOnJobResponse.JobStatus.FAILED;
             TryOnJobResponse updatedJob = TryOnJobResponse.builder()
                     .jobId(job.getJobId())
                     .status(status)
                     .resultImageUrl(resultImageUrl)
                     .sourceProductId(job.getSourceProductId())
-                    .prompt(job.getPrompt())
+                    .prompt(terminal && !retainCompletedPrompts ? null : job.getPrompt())
                     .errorMessage(errorMessage)
                     .createdAt(job.getCreatedAt())
-                    .completedAt(status == TryOnJobResponse.JobStatus.SUCCEEDED ||
-                               status == TryOnJobResponse.JobStatus.FAILED ? LocalDateTime.now() : null)
+                    .completedAt(terminal ? LocalDateTime.now() : null)
                     .estimatedProcessingTimeSeconds(job.getEstimatedProcessingTimeSeconds())
                     .build();
 
-            jobs.put(jobId, updatedJob);
-            
+            jobStore.save(TryOnJobEntry.builder()
+                    .job(updatedJob)
+                    .productImagePath(entry.getProductImagePath())
+                    .userImagePath(entry.getUserImagePath())
+                    .inputKey(entry.getInputKey())
+                    .build());
+            jobEventBroadcaster.publish(updatedJob);
+
             log.info("Updated job {} status to: {}", jobId, status);
         }
     }
@@ -0,0 +1,95 @@
+package com.tryon.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reports virtual threads that get pinned to their carrier thread
+ *
+ * Listens to the JFR jdk.VirtualThreadPinned event, which fires when a virtual thread blocks
+ * while holding a monitor (synchronized) or inside a native frame. Each event is attributed
+ * to the first com.tryon frame on the stack, counted in the tryon.virtual.pinned metric and
+ * logged once per call site so pinning in the Gemini and storage paths is easy to spot.
+ */
+@Component
+@ConditionalOnProperty(name = "tryon.execution.mode", havingValue = "virtual")
+@RequiredArgsConstructor
+@Slf4j
+public class VirtualThreadPinningMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String APP_PACKAGE = "com.tryon.";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${tryon.execution.pinning-detector.enabled:true}")
+    private boolean enabled;
+
+    @Value("${tryon.execution.pinning-detector.threshold-ms:20}")
+    private long thresholdMs;
+
+    private final Set<String> reportedSites = ConcurrentHashMap.newKeySet();
+    private RecordingStream recordingStream;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Virtual thread pinning detector disabled");
+            return;
+        }
+        try {
+            recordingStream = new RecordingStream();
+            recordingStream.enable(PINNED_EVENT)
+                    .withThreshold(Duration.ofMillis(thresholdMs))
+                    .withStackTrace();
+            recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+            recordingStream.startAsync();
+            log.info("Virtual thread pinning detector started (threshold: {}ms)", thresholdMs);
+        } catch (Exception e) {
+            log.warn("Could not start virtual thread pinning detector: {}", e.getMessage());
+        }
+    }
+
+    private void onPinned(RecordedEvent event) {
+        List<RecordedFrame> frames = event.getStackTrace() != null ? event.getStackTrace().getFrames() : List.of();
+
+        String reason = frames.stream().anyMatch(frame -> "Native".equals(frame.getType())) ? "native" : "synchronized";
+        String site = frames.stream()
+                .filter(RecordedFrame::isJavaFrame)
+                .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName())
+                .filter(name -> name.startsWith(APP_PACKAGE))
+                .findFirst()
+                .orElse("external");
+
+        meterRegistry.counter("tryon.virtual.pinned", "reason", reason, "site", site).increment();
+
+        if (reportedSites.add(reason + "@" + site)) {
+            log.warn("Virtual thread pinned for {}ms ({}) at {} - top frame: {}",
+                    event.getDuration().toMillis(), reason, site,
+                    frames.isEmpty() ? "unknown" : frames.get(0).getMethod().getType().getName()
+                            + "." + frames.get(0).getMethod().getName());
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (recordingStream != null) {
+            recordingStream.close();
+        }
+    }
+}
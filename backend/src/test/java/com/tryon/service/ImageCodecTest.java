@@ -0,0 +1,98 @@
+package com.tryon.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageCodecTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void appliesExifOrientationBeforeReturningTheImage() throws IOException {
+        Path photo = directory.resolve("selfie.jpg");
+        Files.write(photo, withExifOrientation(jpeg(halves(40, 20)), 6));
+
+        BufferedImage image = ImageCodec.read(photo, Long.MAX_VALUE);
+
+        // Rotated 90 clockwise: the red left half ends up on top
+        assertThat(image.getWidth()).isEqualTo(20);
+        assertThat(image.getHeight()).isEqualTo(40);
+        assertThat(new Color(image.getRGB(10, 5)).getRed()).isGreaterThan(200);
+        assertThat(new Color(image.getRGB(10, 35)).getBlue()).isGreaterThan(200);
+    }
+
+    @Test
+    void leavesImagesWithoutExifAsStored() throws IOException {
+        Path photo = directory.resolve("plain.jpg");
+        Files.write(photo, jpeg(halves(40, 20)));
+
+        BufferedImage image = ImageCodec.read(photo, Long.MAX_VALUE);
+
+        assertThat(image.getWidth()).isEqualTo(40);
+        assertThat(image.getHeight()).isEqualTo(20);
+        assertThat(ImageCodec.readExifOrientation(photo)).isEqualTo(1);
+    }
+
+    @Test
+    void refusesImagesAbovePixelLimit() throws IOException {
+        Path photo = directory.resolve("large.jpg");
+        Files.write(photo, jpeg(halves(40, 20)));
+
+        assertThatThrownBy(() -> ImageCodec.read(photo, 799))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("40x20");
+    }
+
+    private static BufferedImage halves(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.RED);
+        graphics.fillRect(0, 0, width / 2, height);
+        graphics.setColor(Color.BLUE);
+        graphics.fillRect(width / 2, 0, width - width / 2, height);
+        graphics.dispose();
+        return image;
+    }
+
+    private static byte[] jpeg(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Insert a big-endian APP1 EXIF segment holding only the Orientation tag after the JFIF header
+     */
+    private static byte[] withExifOrientation(byte[] jpeg, int orientation) {
+        byte[] exif = {
+                'E', 'x', 'i', 'f', 0, 0,
+                'M', 'M', 0, 42, 0, 0, 0, 8,
+                0, 1,
+                0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+                0, 0, 0, 0
+        };
+        int app0End = 4 + (((jpeg[4] & 0xFF) << 8) | (jpeg[5] & 0xFF));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, app0End);
+        out.write(0xFF);
+        out.write(0xE1);
+        out.write((exif.length + 2) >> 8);
+        out.write((exif.length + 2) & 0xFF);
+        out.writeBytes(exif);
+        out.write(jpeg, app0End, jpeg.length - app0End);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,88 @@
+package com.tryon.service;
+
+import com.tryon.dto.ProductResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductSearchIndexTest {
+
+    /**
+     * The "dress" postings all precede the "red" ones, so probing "dress" from the first "red"
+     * product runs off its end: with 8 entries the list is exactly full, with 5 it has stale spare slots
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {8, 5})
+    void conjunctionWhoseOtherTermEndsBeforeTheDriverMatchesNothing(int dresses) {
+        ProductSearchIndex index = new ProductSearchIndex();
+        for (int i = 0; i < dresses; i++) {
+            index.put(product("dress-" + i, "dress"));
+        }
+        for (int i = 0; i < 5; i++) {
+            index.put(product("shirt-" + i, "red shirt"));
+        }
+
+        assertThat(index.search("red dress", 10)).isEmpty();
+    }
+
+    @Test
+    void conjunctionFindsProductsCarryingEveryTerm() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        for (int i = 0; i < 8; i++) {
+            index.put(product("dress-" + i, "dress"));
+        }
+        for (int i = 0; i < 5; i++) {
+            index.put(product("shirt-" + i, "red shirt"));
+        }
+        index.put(product("red-dress", "red dress"));
+
+        assertThat(index.search("red dress", 10))
+                .extracting(ProductSearchIndex.Hit::productId)
+                .containsExactly("red-dress");
+    }
+
+    @Test
+    void typeaheadPrefersCommonCompletionsOverAlphabeticallyFirstOnes() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        for (int i = 0; i < 100; i++) {
+            index.put(product("rare-" + i, "bla" + i));
+        }
+        for (int i = 0; i < 3; i++) {
+            index.put(product("blue-" + i, "blue shirt"));
+        }
+
+        assertThat(index.search("bl", 200))
+                .extracting(ProductSearchIndex.Hit::productId)
+                .contains("blue-0", "blue-1", "blue-2");
+    }
+
+    @Test
+    void trailingStopWordStillMatchesAsPrefix() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        index.put(product("indigo", "indigo jeans"));
+        index.put(product("black", "black jeans"));
+
+        assertThat(index.search("in", 10))
+                .extracting(ProductSearchIndex.Hit::productId)
+                .containsExactly("indigo");
+        assertThat(index.search("jeans in", 10))
+                .extracting(ProductSearchIndex.Hit::productId)
+                .containsExactly("indigo");
+        assertThat(index.search("jeans in black", 10))
+                .extracting(ProductSearchIndex.Hit::productId)
+                .containsExactly("black");
+    }
+
+    private static ProductResponse product(String id, String name) {
+        return ProductResponse.builder()
+                .id(id)
+                .name(name)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+    }
+}
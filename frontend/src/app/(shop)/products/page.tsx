@@ -15,13 +15,22 @@ export default function ProductsPage() {
       setIsLoading(true);
       setError(null);
       
-      const response = await fetch('http://localhost:8080/api/products');
-      
-      if (!response.ok) {
-        throw new Error(`HTTP error! status: ${response.status}`);
-      }
-      
-      const data = await response.json();
+      // The API pages its results; follow X-Next-Cursor until the whole catalog is loaded
+      const data = [];
+      let cursor: string | null = null;
+      do {
+        const params = new URLSearchParams({ limit: '500' });
+        if (cursor) params.set('cursor', cursor);
+        const response = await fetch(`http://localhost:8080/api/products?${params}`);
+
+        if (!response.ok) {
+          throw new Error(`HTTP error! status: ${response.status}`);
+        }
+
+        data.push(...(await response.json()));
+        cursor = response.headers.get('X-Next-Cursor');
+      } while (cursor);
+
       setProducts(data);
       setIsLoading(false);
     } catch (err) {
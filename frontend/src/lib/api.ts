@@ -12,6 +12,13 @@ class ApiClient {
     endpoint: string,
     options: RequestInit = {}
   ): Promise<T> {
+    return (await this.requestWithHeaders<T>(endpoint, options)).data;
+  }
+
+  private async requestWithHeaders<T>(
+    endpoint: string,
+    options: RequestInit = {}
+  ): Promise<{ data: T; headers: Headers }> {
     const url = `${this.baseURL}${endpoint}`;
     
     const defaultOptions: RequestInit = {
@@ -41,10 +48,10 @@ class ApiClient {
 
       // Handle empty responses (like 204 No Content)
       if (response.status === 204 || response.headers.get('content-length') === '0') {
-        return {} as T;
+        return { data: {} as T, headers: response.headers };
       }
 
-      return await response.json();
+      return { data: await response.json(), headers: response.headers };
     } catch (error) {
       if (error instanceof TypeError) {
         // Network error
@@ -62,6 +69,11 @@ class ApiClient {
     return this.request<T>(endpoint, { method: 'GET' });
   }
 
+  // GET that also returns the response headers (e.g. X-Next-Cursor for paged lists)
+  async getWithHeaders<T>(endpoint: string): Promise<{ data: T; headers: Headers }> {
+    return this.requestWithHeaders<T>(endpoint, { method: 'GET' });
+  }
+
   async post<T>(endpoint: string, data?: any): Promise<T> {
     return this.request<T>(endpoint, {
       method: 'POST',
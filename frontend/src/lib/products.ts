@@ -1,10 +1,23 @@
 import { apiClient } from '@/lib/api';
 import { Product, ProductRequest, PaginationParams } from '@/types/api';
 
+// Largest page the backend serves (catalog.page.max-size)
+const PRODUCT_PAGE_SIZE = 500;
+
 export const productApi = {
-  // Get all products
-  getProducts: (): Promise<Product[]> => {
-    return apiClient.get<Product[]>('/api/products');
+  // Get all products, following X-Next-Cursor across pages
+  getProducts: async (): Promise<Product[]> => {
+    const products: Product[] = [];
+    let cursor: string | null = null;
+    do {
+      const params = new URLSearchParams({ limit: String(PRODUCT_PAGE_SIZE) });
+      if (cursor) params.set('cursor', cursor);
+      const page: { data: Product[]; headers: Headers } =
+        await apiClient.getWithHeaders<Product[]>(`/api/products?${params}`);
+      products.push(...page.data);
+      cursor = page.headers.get('X-Next-Cursor');
+    } while (cursor);
+    return products;
   },
 
   // Get product by ID